@@ -0,0 +1,195 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Iterates over an array in sorted order, sorting only as much as it has to.
+ *
+ * This is incremental quick sort: to produce the next element, the unsorted
+ * region in front of it is partitioned around random pivots until that
+ * element is in its final place. Pivots found along the way are kept on a
+ * stack, so later elements reuse the earlier partitioning. Reading the first
+ * k elements takes O(n + k log k) expected time instead of O(n log n) for a
+ * full sort, and reading every element is no slower than quick sort.
+ *
+ * The array is copied when the iterator is created, so the caller's array
+ * is never reordered.
+ *
+ * @param <T> data type to iterate over
+ * @author Joseph Cantrell
+ * @version 1.0
+ */
+public class LazySortedIterator<T> implements Iterator<T> {
+
+    /**
+     * Regions this short are insertion sorted instead of partitioned.
+     */
+    private static final int INSERTION_THRESHOLD = 16;
+
+    private final T[] arr;
+    private final Comparator<? super T> comparator;
+    private final Random rand;
+    private int[] pivots;
+    private int pivotCount;
+    private int current;
+    private int sortedEnd;
+
+    /**
+     * Create an iterator over a copy of arr.
+     *
+     * @throws IllegalArgumentException if the array or comparator or rand is
+     * null
+     * @param arr the array to iterate over in sorted order
+     * @param comparator the Comparator used to compare the data in arr
+     * @param rand the Random object used to select pivots
+     */
+    public LazySortedIterator(T[] arr, Comparator<? super T> comparator,
+                              Random rand) {
+        if (arr == null || comparator == null || rand == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " array or comparator or Random object.");
+        }
+        this.arr = arr.clone();
+        this.comparator = comparator;
+        this.rand = rand;
+        pivots = new int[16];
+        pivots[pivotCount++] = arr.length;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return current < arr.length;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more elements.");
+        }
+        while (current >= sortedEnd) {
+            int bound = pivots[pivotCount - 1];
+            if (bound == current) {
+                //the pivot itself is already in its final place
+                pivotCount--;
+                sortedEnd = current + 1;
+            } else if (bound - current <= INSERTION_THRESHOLD) {
+                insertionSort(current, bound);
+                sortedEnd = bound;
+            } else {
+                if (pivotCount == pivots.length) {
+                    pivots = Arrays.copyOf(pivots, pivots.length * 2);
+                }
+                pivots[pivotCount++] = partition(current, bound - 1);
+            }
+        }
+        T next = arr[current];
+        arr[current++] = null;
+        return next;
+    }
+
+    /**
+     * Get the number of elements not yet returned.
+     *
+     * @return the number of remaining elements
+     */
+    public int remaining() {
+        return arr.length - current;
+    }
+
+    /**
+     * Get a spliterator over the remaining elements. It shares this
+     * iterator's position, so only one of the two should be used.
+     *
+     * @return a sorted, ordered and sized spliterator
+     */
+    public Spliterator<T> spliterator() {
+        return new Spliterator<T>() {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (!hasNext()) {
+                    return false;
+                }
+                action.accept(next());
+                return true;
+            }
+
+            @Override
+            public Spliterator<T> trySplit() {
+                return null;
+            }
+
+            @Override
+            public long estimateSize() {
+                return remaining();
+            }
+
+            @Override
+            public int characteristics() {
+                return ORDERED | SORTED | SIZED;
+            }
+
+            @Override
+            public Comparator<? super T> getComparator() {
+                return comparator;
+            }
+        };
+    }
+
+    /**
+     * Insertion sort the subarray arr[l, r).
+     *
+     * @param l The first index of the subarray, inclusive
+     * @param r The last index of the subarray, exclusive
+     */
+    private void insertionSort(int l, int r) {
+        for (int i = l + 1; i < r; i++) {
+            T insert = arr[i];
+            int j = i - 1;
+            while (j >= l && comparator.compare(arr[j], insert) > 0) {
+                arr[j + 1] = arr[j];
+                j--;
+            }
+            arr[j + 1] = insert;
+        }
+    }
+
+    /**
+     * Partition arr[l, r] around a random pivot.
+     *
+     * @param l The left bound of the subarray
+     * @param r The right bound of the subarray
+     * @return The final index of the pivot
+     */
+    private int partition(int l, int r) {
+        int pivotIndex = rand.nextInt(r - l + 1) + l;
+        T pivot = arr[pivotIndex];
+        arr[pivotIndex] = arr[l];
+        arr[l] = pivot;
+        int left = l + 1;
+        int right = r;
+        while (true) {
+            while (left <= right && comparator.compare(arr[left], pivot) < 0) {
+                left++;
+            }
+            while (left <= right
+                    && comparator.compare(arr[right], pivot) > 0) {
+                right--;
+            }
+            if (left >= right) {
+                break;
+            }
+            T temp = arr[left];
+            arr[left] = arr[right];
+            arr[right] = temp;
+            left++;
+            right--;
+        }
+        arr[l] = arr[right];
+        arr[right] = pivot;
+        return right;
+    }
+}
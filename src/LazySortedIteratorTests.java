@@ -0,0 +1,75 @@
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for lazily sorted iteration.
+ *
+ * @author Joseph Cantrell
+ * @version 1.0
+ */
+public class LazySortedIteratorTests {
+    private static final int TIMEOUT = 200;
+
+    @Test(timeout = TIMEOUT)
+    public void testIteratesInOrder() {
+        Integer[] unsortedArray = new Integer[] {54, 28, 58, 84, 20, 122, 85,
+            3, 28};
+        Integer[] original = unsortedArray.clone();
+        LazySortedIterator<Integer> iterator = new LazySortedIterator<>(
+                unsortedArray, Comparator.naturalOrder(), new Random(0));
+        Integer[] expected = new Integer[] {3, 20, 28, 28, 54, 58, 84, 85,
+            122};
+        for (Integer value : expected) {
+            assertTrue(iterator.hasNext());
+            assertEquals(value, iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+        assertArrayEquals(original, unsortedArray);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testFirstElementsOfLargeArray() {
+        Random rand = new Random(0x600dc0de);
+        Integer[] unsortedArray = new Integer[100000];
+        for (int i = 0; i < unsortedArray.length; i++) {
+            unsortedArray[i] = unsortedArray.length - i;
+        }
+        LazySortedIterator<Integer> iterator = new LazySortedIterator<>(
+                unsortedArray, Comparator.naturalOrder(), rand);
+        for (int i = 1; i <= 100; i++) {
+            assertEquals(Integer.valueOf(i), iterator.next());
+        }
+        assertEquals(unsortedArray.length - 100, iterator.remaining());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testSpliterator() {
+        Integer[] unsortedArray = new Integer[] {5, 4, 3, 2, 1};
+        Comparator<Integer> comparator = Comparator.naturalOrder();
+        LazySortedIterator<Integer> iterator = new LazySortedIterator<>(
+                unsortedArray, comparator, new Random(0));
+        assertEquals(Integer.valueOf(1), iterator.next());
+        Spliterator<Integer> spliterator = iterator.spliterator();
+        assertEquals(4, spliterator.estimateSize());
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+        assertEquals(comparator, spliterator.getComparator());
+        StringBuilder rest = new StringBuilder();
+        spliterator.forEachRemaining(rest::append);
+        assertEquals("2345", rest.toString());
+    }
+
+    @Test(timeout = TIMEOUT, expected = NoSuchElementException.class)
+    public void testNextWhenEmpty() {
+        new LazySortedIterator<Integer>(new Integer[0],
+                Comparator.naturalOrder(), new Random(0)).next();
+    }
+}
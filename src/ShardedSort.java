@@ -0,0 +1,685 @@
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorts arrays across several local worker JVMs, so a large sort can use
+ * many small heaps in parallel instead of one large one.
+ *
+ * The coordinator picks splitters from a random sample, range-partitions
+ * the array, and streams one partition to each worker over its standard
+ * input. Values equal to a splitter may go to any shard whose range
+ * includes them, so they are spread round-robin over those shards; a hot
+ * key or a constant array is still divided evenly between the workers.
+ * Each worker sorts its partition with {@link Sorting} and streams it back
+ * over its standard output. Because the partitions are ranges, the
+ * sorted partitions are read back one after another straight into the
+ * original array.
+ *
+ * Every message between the coordinator and a worker is one frame:
+ *
+ * <pre>
+ *  byte  element type, 1 for int or 2 for long
+ *  int   element count
+ *  ...   the elements, big-endian
+ * </pre>
+ *
+ * A worker is started by running this class's main method with the same
+ * class path as the coordinator.
+ *
+ * @author Joseph Cantrell
+ * @version 1.0
+ */
+public final class ShardedSort {
+
+    /**
+     * The most workers a single sort may use.
+     */
+    public static final int MAX_WORKERS = 256;
+
+    /**
+     * Frame type for int elements.
+     */
+    private static final byte INT_FRAME = 1;
+
+    /**
+     * Frame type for long elements.
+     */
+    private static final byte LONG_FRAME = 2;
+
+    /**
+     * How many sample elements are taken per worker to choose splitters.
+     */
+    private static final int OVERSAMPLE = 64;
+
+    /**
+     * The size of the buffer used for each pipe, in bytes.
+     */
+    private static final int CHUNK = 1 << 16;
+
+    /**
+     * How long to wait for a worker whose pipe broke to exit, in seconds.
+     */
+    private static final int EXIT_WAIT = 10;
+
+    /**
+     * Do not instantiate.
+     */
+    private ShardedSort() {
+    }
+
+    /**
+     * Sort an array of ints using worker JVMs.
+     *
+     * @throws IllegalArgumentException if the array is null or workers is
+     * not between 1 and MAX_WORKERS
+     * @throws IOException if a worker cannot be started or fails
+     * @param arr the array that must be sorted after the method runs
+     * @param workers the number of worker JVMs to start, capped at the
+     * length of the array
+     * @param jvmOptions extra options for each worker JVM, such as -Xmx
+     */
+    public static void sort(int[] arr, int workers, String... jvmOptions)
+        throws IOException {
+        if (arr == null) {
+            throw new IllegalArgumentException("Cannot sort a null array.");
+        }
+        checkWorkers(workers);
+        if (arr.length < 2) {
+            return;
+        }
+        //never start more workers than there are elements to give them
+        workers = Math.min(workers, arr.length);
+        int[] splitters = splitters(arr, workers, new Random());
+        int[] counts = new int[workers];
+        for (int i = 0; i < arr.length; i++) {
+            counts[shard(splitters, arr[i], i)]++;
+        }
+        Shard[] shards = start(workers, jvmOptions);
+        try {
+            for (int i = 0; i < workers; i++) {
+                shards[i].writeHeader(INT_FRAME, counts[i]);
+            }
+            for (int i = 0; i < arr.length; i++) {
+                shards[shard(splitters, arr[i], i)].putInt(arr[i]);
+            }
+            for (Shard shard : shards) {
+                shard.finishWriting();
+            }
+            int offset = 0;
+            for (int i = 0; i < workers; i++) {
+                shards[i].readHeader(INT_FRAME, counts[i]);
+                shards[i].readInts(arr, offset, counts[i]);
+                offset += counts[i];
+            }
+            finish(shards);
+        } catch (IOException e) {
+            throw workerFailure(shards, e);
+        } finally {
+            destroy(shards);
+        }
+    }
+
+    /**
+     * Sort an array of longs using worker JVMs.
+     *
+     * @throws IllegalArgumentException if the array is null or workers is
+     * not between 1 and MAX_WORKERS
+     * @throws IOException if a worker cannot be started or fails
+     * @param arr the array that must be sorted after the method runs
+     * @param workers the number of worker JVMs to start, capped at the
+     * length of the array
+     * @param jvmOptions extra options for each worker JVM, such as -Xmx
+     */
+    public static void sort(long[] arr, int workers, String... jvmOptions)
+        throws IOException {
+        if (arr == null) {
+            throw new IllegalArgumentException("Cannot sort a null array.");
+        }
+        checkWorkers(workers);
+        if (arr.length < 2) {
+            return;
+        }
+        //never start more workers than there are elements to give them
+        workers = Math.min(workers, arr.length);
+        long[] splitters = splitters(arr, workers, new Random());
+        int[] counts = new int[workers];
+        for (int i = 0; i < arr.length; i++) {
+            counts[shard(splitters, arr[i], i)]++;
+        }
+        Shard[] shards = start(workers, jvmOptions);
+        try {
+            for (int i = 0; i < workers; i++) {
+                shards[i].writeHeader(LONG_FRAME, counts[i]);
+            }
+            for (int i = 0; i < arr.length; i++) {
+                shards[shard(splitters, arr[i], i)].putLong(arr[i]);
+            }
+            for (Shard shard : shards) {
+                shard.finishWriting();
+            }
+            int offset = 0;
+            for (int i = 0; i < workers; i++) {
+                shards[i].readHeader(LONG_FRAME, counts[i]);
+                shards[i].readLongs(arr, offset, counts[i]);
+                offset += counts[i];
+            }
+            finish(shards);
+        } catch (IOException e) {
+            throw workerFailure(shards, e);
+        } finally {
+            destroy(shards);
+        }
+    }
+
+    /**
+     * Run as a worker: read one frame from standard input, sort it, and
+     * write it back to standard output.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        try {
+            DataInputStream in = new DataInputStream(System.in);
+            byte type = in.readByte();
+            int count = in.readInt();
+            Shard out = new Shard(null, System.out, null);
+            Random rand = new Random();
+            if (type == INT_FRAME) {
+                int[] arr = new int[count];
+                readFully(in, arr, 0, count);
+                Sorting.quickSort(arr, rand);
+                out.writeHeader(INT_FRAME, count);
+                for (int value : arr) {
+                    out.putInt(value);
+                }
+            } else if (type == LONG_FRAME) {
+                long[] arr = new long[count];
+                readFully(in, arr, 0, count);
+                Sorting.quickSort(arr, rand);
+                out.writeHeader(LONG_FRAME, count);
+                for (long value : arr) {
+                    out.putLong(value);
+                }
+            } else {
+                throw new IOException("Unknown frame type " + type + ".");
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Sort worker failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Check that a worker count is allowed.
+     *
+     * @throws IllegalArgumentException if it is not
+     * @param workers the number of workers requested
+     */
+    private static void checkWorkers(int workers) {
+        if (workers < 1 || workers > MAX_WORKERS) {
+            throw new IllegalArgumentException("The number of workers must"
+                    + " be between 1 and " + MAX_WORKERS + ".");
+        }
+    }
+
+    /**
+     * Choose splitters for an int array from a sorted random sample.
+     *
+     * @param arr the array to be partitioned, with at least one element
+     * @param workers the number of shards
+     * @param rand the Random object used to take the sample
+     * @return workers - 1 splitters in increasing order
+     */
+    static int[] splitters(int[] arr, int workers, Random rand) {
+        int[] sample = new int[Math.min(arr.length, workers * OVERSAMPLE)];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = arr[rand.nextInt(arr.length)];
+        }
+        Sorting.quickSort(sample, rand);
+        int[] splitters = new int[workers - 1];
+        for (int i = 0; i < splitters.length; i++) {
+            splitters[i] = sample[(i + 1) * sample.length / workers];
+        }
+        return splitters;
+    }
+
+    /**
+     * Find the shard an int belongs to. Shard s holds values between
+     * splitters[s - 1] and splitters[s], so a value equal to one or more
+     * splitters may go to any of the shards those splitters bound. Such
+     * values are spread round-robin by their index in the array.
+     *
+     * @param splitters the splitters between the shards, in order
+     * @param value the value to place
+     * @param index the index of the value in the array being sorted
+     * @return the index of the shard
+     */
+    static int shard(int[] splitters, int value, int index) {
+        //first shard that may hold value: the number of smaller splitters
+        int first = 0;
+        int high = splitters.length;
+        while (first < high) {
+            int middle = (first + high) >>> 1;
+            if (splitters[middle] < value) {
+                first = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        //last shard that may hold value: the number of splitters <= value
+        int last = first;
+        high = splitters.length;
+        while (last < high) {
+            int middle = (last + high) >>> 1;
+            if (splitters[middle] <= value) {
+                last = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return first + index % (last - first + 1);
+    }
+
+    /**
+     * Choose splitters for a long array from a sorted random sample.
+     *
+     * @param arr the array to be partitioned, with at least one element
+     * @param workers the number of shards
+     * @param rand the Random object used to take the sample
+     * @return workers - 1 splitters in increasing order
+     */
+    static long[] splitters(long[] arr, int workers, Random rand) {
+        long[] sample = new long[Math.min(arr.length, workers * OVERSAMPLE)];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = arr[rand.nextInt(arr.length)];
+        }
+        Sorting.quickSort(sample, rand);
+        long[] splitters = new long[workers - 1];
+        for (int i = 0; i < splitters.length; i++) {
+            splitters[i] = sample[(i + 1) * sample.length / workers];
+        }
+        return splitters;
+    }
+
+    /**
+     * Find the shard a long belongs to. Shard s holds values between
+     * splitters[s - 1] and splitters[s], so a value equal to one or more
+     * splitters may go to any of the shards those splitters bound. Such
+     * values are spread round-robin by their index in the array.
+     *
+     * @param splitters the splitters between the shards, in order
+     * @param value the value to place
+     * @param index the index of the value in the array being sorted
+     * @return the index of the shard
+     */
+    static int shard(long[] splitters, long value, int index) {
+        //first shard that may hold value: the number of smaller splitters
+        int first = 0;
+        int high = splitters.length;
+        while (first < high) {
+            int middle = (first + high) >>> 1;
+            if (splitters[middle] < value) {
+                first = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        //last shard that may hold value: the number of splitters <= value
+        int last = first;
+        high = splitters.length;
+        while (last < high) {
+            int middle = (last + high) >>> 1;
+            if (splitters[middle] <= value) {
+                last = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return first + index % (last - first + 1);
+    }
+
+    /**
+     * Start the worker JVMs.
+     *
+     * @throws IOException if a worker cannot be started
+     * @param workers the number of workers to start
+     * @param jvmOptions extra options for each worker JVM
+     * @return a handle for each worker
+     */
+    private static Shard[] start(int workers, String[] jvmOptions)
+        throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+                .toString());
+        if (jvmOptions != null) {
+            for (String option : jvmOptions) {
+                command.add(option);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardedSort.class.getName());
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT);
+        Shard[] shards = new Shard[workers];
+        try {
+            for (int i = 0; i < workers; i++) {
+                Process process = builder.start();
+                shards[i] = new Shard(process, process.getOutputStream(),
+                        process.getInputStream());
+            }
+        } catch (IOException e) {
+            destroy(shards);
+            throw e;
+        }
+        return shards;
+    }
+
+    /**
+     * Wait for every worker to exit and check that each one succeeded.
+     *
+     * @throws IOException if a worker failed or was interrupted
+     * @param shards the workers to wait for
+     */
+    private static void finish(Shard[] shards) throws IOException {
+        for (Shard shard : shards) {
+            try {
+                int status = shard.process.waitFor();
+                if (status != 0) {
+                    throw new IOException("Sort worker exited with status "
+                            + status + ".");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for a sort"
+                        + " worker.", e);
+            }
+        }
+    }
+
+    /**
+     * Kill any workers that are still running.
+     *
+     * @param shards the workers to kill, possibly with null entries
+     */
+    private static void destroy(Shard[] shards) {
+        for (Shard shard : shards) {
+            if (shard != null && shard.process.isAlive()) {
+                shard.process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Find out why talking to the workers failed. A broken pipe usually
+     * means a worker exited, for example because a JVM option was bad, so
+     * the exit status of such a worker is reported instead of the pipe
+     * error.
+     *
+     * @param shards the workers of the failed sort
+     * @param e the error seen by the coordinator
+     * @return the exception to throw
+     */
+    private static IOException workerFailure(Shard[] shards, IOException e) {
+        for (Shard shard : shards) {
+            if (shard.broken) {
+                try {
+                    if (shard.process.waitFor(EXIT_WAIT, TimeUnit.SECONDS)
+                            && shard.process.exitValue() != 0) {
+                        return new IOException("Sort worker exited with"
+                                + " status " + shard.process.exitValue()
+                                + ".", e);
+                    }
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return e;
+                }
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Read big-endian ints from a stream into an array.
+     *
+     * @throws IOException if the stream ends first
+     * @param in the stream to read
+     * @param arr the array to fill
+     * @param offset the first index to fill
+     * @param count the number of ints to read
+     */
+    private static void readFully(InputStream in, int[] arr, int offset,
+                                  int count) throws IOException {
+        byte[] chunk = new byte[CHUNK];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        while (count > 0) {
+            int length = Math.min(count, CHUNK / Integer.BYTES);
+            readFully(in, chunk, length * Integer.BYTES);
+            buffer.clear();
+            buffer.asIntBuffer().get(arr, offset, length);
+            offset += length;
+            count -= length;
+        }
+    }
+
+    /**
+     * Read big-endian longs from a stream into an array.
+     *
+     * @throws IOException if the stream ends first
+     * @param in the stream to read
+     * @param arr the array to fill
+     * @param offset the first index to fill
+     * @param count the number of longs to read
+     */
+    private static void readFully(InputStream in, long[] arr, int offset,
+                                  int count) throws IOException {
+        byte[] chunk = new byte[CHUNK];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        while (count > 0) {
+            int length = Math.min(count, CHUNK / Long.BYTES);
+            readFully(in, chunk, length * Long.BYTES);
+            buffer.clear();
+            buffer.asLongBuffer().get(arr, offset, length);
+            offset += length;
+            count -= length;
+        }
+    }
+
+    /**
+     * Read exactly length bytes from a stream.
+     *
+     * @throws IOException if the stream ends first
+     * @param in the stream to read
+     * @param bytes the array to fill from the start
+     * @param length the number of bytes to read
+     */
+    private static void readFully(InputStream in, byte[] bytes, int length)
+        throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = in.read(bytes, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Sort stream ended early.");
+            }
+            read += n;
+        }
+    }
+
+    /**
+     * One end of the pipes to a worker, with a buffer for outgoing frames.
+     */
+    private static final class Shard {
+        private final Process process;
+        private final OutputStream out;
+        private final InputStream in;
+        private final ByteBuffer buffer;
+        private boolean broken;
+
+        /**
+         * Wrap the streams of a worker.
+         *
+         * @param process the worker process, or null inside a worker
+         * @param out the stream frames are written to
+         * @param in the stream frames are read from, or null inside a
+         * worker
+         */
+        Shard(Process process, OutputStream out, InputStream in) {
+            this.process = process;
+            this.out = out;
+            this.in = in;
+            buffer = ByteBuffer.allocate(CHUNK);
+        }
+
+        /**
+         * Start a frame.
+         *
+         * @throws IOException if the buffer cannot be flushed
+         * @param type the element type of the frame
+         * @param count the number of elements that will follow
+         */
+        void writeHeader(byte type, int count) throws IOException {
+            if (buffer.remaining() < 1 + Integer.BYTES) {
+                drain();
+            }
+            buffer.put(type);
+            buffer.putInt(count);
+        }
+
+        /**
+         * Append an int to the current frame.
+         *
+         * @throws IOException if the buffer cannot be flushed
+         * @param value the value to append
+         */
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                drain();
+            }
+            buffer.putInt(value);
+        }
+
+        /**
+         * Append a long to the current frame.
+         *
+         * @throws IOException if the buffer cannot be flushed
+         * @param value the value to append
+         */
+        void putLong(long value) throws IOException {
+            if (buffer.remaining() < Long.BYTES) {
+                drain();
+            }
+            buffer.putLong(value);
+        }
+
+        /**
+         * Write out anything buffered and flush the stream.
+         *
+         * @throws IOException if the stream cannot be written
+         */
+        void flush() throws IOException {
+            drain();
+            try {
+                out.flush();
+            } catch (IOException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Flush and close the outgoing stream so the worker sees the end of
+         * its input.
+         *
+         * @throws IOException if the stream cannot be written
+         */
+        void finishWriting() throws IOException {
+            flush();
+            try {
+                out.close();
+            } catch (IOException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Read and check the header of the frame sent back by the worker.
+         *
+         * @throws IOException if the header does not match what was sent
+         * @param type the expected element type
+         * @param count the expected number of elements
+         */
+        void readHeader(byte type, int count) throws IOException {
+            byte[] header = new byte[1 + Integer.BYTES];
+            try {
+                readFully(in, header, header.length);
+            } catch (IOException e) {
+                broken = true;
+                throw e;
+            }
+            ByteBuffer view = ByteBuffer.wrap(header);
+            if (view.get() != type || view.getInt() != count) {
+                throw new IOException("Sort worker returned a bad frame.");
+            }
+        }
+
+        /**
+         * Read the ints of the frame sent back by the worker.
+         *
+         * @throws IOException if the stream ends first
+         * @param arr the array to fill
+         * @param offset the first index to fill
+         * @param count the number of ints to read
+         */
+        void readInts(int[] arr, int offset, int count) throws IOException {
+            try {
+                readFully(in, arr, offset, count);
+            } catch (IOException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Read the longs of the frame sent back by the worker.
+         *
+         * @throws IOException if the stream ends first
+         * @param arr the array to fill
+         * @param offset the first index to fill
+         * @param count the number of longs to read
+         */
+        void readLongs(long[] arr, int offset, int count) throws IOException {
+            try {
+                readFully(in, arr, offset, count);
+            } catch (IOException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Write out the buffered bytes.
+         *
+         * @throws IOException if the stream cannot be written
+         */
+        private void drain() throws IOException {
+            try {
+                out.write(buffer.array(), 0, buffer.position());
+            } catch (IOException e) {
+                broken = true;
+                throw e;
+            }
+            buffer.clear();
+        }
+    }
+}
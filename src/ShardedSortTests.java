@@ -0,0 +1,97 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for sorting with worker JVMs.
+ *
+ * @author Joseph Cantrell
+ * @version 1.0
+ */
+public class ShardedSortTests {
+    private static final int TIMEOUT = 20000;
+
+    @Test(timeout = TIMEOUT)
+    public void testSortInts() throws IOException {
+        int[] unsortedArray = new int[] {54, 28, 58, 84, 20, 122, 85, 3};
+        int[] sortedArray = new int[] {3, 20, 28, 54, 58, 84, 85, 122};
+        ShardedSort.sort(unsortedArray, 3);
+        assertArrayEquals(sortedArray, unsortedArray);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testSortLongs() throws IOException {
+        Random rand = new Random(0x600dc0de);
+        long[] unsortedArray = new long[100000];
+        for (int i = 0; i < unsortedArray.length; i++) {
+            unsortedArray[i] = rand.nextLong();
+        }
+        long[] sortedArray = unsortedArray.clone();
+        Sorting.quickSort(sortedArray, rand);
+        ShardedSort.sort(unsortedArray, 4, "-Xmx64m");
+        assertArrayEquals(sortedArray, unsortedArray);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testConstantInputIsSpreadEvenly() throws IOException {
+        int[] constantArray = new int[100000];
+        Arrays.fill(constantArray, 7);
+        int[] splitters = ShardedSort.splitters(constantArray, 4,
+                new Random(0x600dc0de));
+        int[] counts = new int[4];
+        for (int i = 0; i < constantArray.length; i++) {
+            counts[ShardedSort.shard(splitters, constantArray[i], i)]++;
+        }
+        assertArrayEquals(new int[] {25000, 25000, 25000, 25000}, counts);
+        int[] sortedArray = constantArray.clone();
+        ShardedSort.sort(constantArray, 4);
+        assertArrayEquals(sortedArray, constantArray);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testHotKeyIsSpread() {
+        Random rand = new Random(0x600dc0de);
+        long[] skewedArray = new long[100000];
+        for (int i = 0; i < skewedArray.length; i++) {
+            skewedArray[i] = rand.nextInt(10) == 0 ? rand.nextLong() : 42;
+        }
+        long[] splitters = ShardedSort.splitters(skewedArray, 4, rand);
+        int[] counts = new int[4];
+        for (int i = 0; i < skewedArray.length; i++) {
+            counts[ShardedSort.shard(splitters, skewedArray[i], i)]++;
+        }
+        for (int count : counts) {
+            assertTrue("Shard size: " + count,
+                    count <= skewedArray.length / 4 * 3 / 2);
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testBadWorkerOption() {
+        try {
+            ShardedSort.sort(new int[] {3, 1, 2}, 2, "-XX:+NoSuchOption");
+            fail("Workers started with a bad option.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(),
+                    e.getMessage().startsWith("Sort worker exited with"));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testMoreWorkersThanElements() throws IOException {
+        long[] unsortedArray = new long[] {58, 3};
+        ShardedSort.sort(unsortedArray, ShardedSort.MAX_WORKERS);
+        assertArrayEquals(new long[] {3, 58}, unsortedArray);
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testNoWorkers() throws IOException {
+        ShardedSort.sort(new int[] {2, 1}, 0);
+    }
+}
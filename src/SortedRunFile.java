@@ -0,0 +1,671 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A file format for persisting the output of a sort so it can be searched
+ * later without sorting it again.
+ *
+ * The file is a sequence of fixed-size blocks of fixed-width records. Each
+ * record starts with a 4 or 8 byte big-endian key, followed by a payload of
+ * the remaining record width. Records never span blocks, and the last block
+ * is padded to a full block. After the blocks comes a footer holding the
+ * first key of every block (the fence pointers) and a fixed-size trailer:
+ *
+ * <pre>
+ *  long  record count
+ *  long  minimum key
+ *  long  maximum key
+ *  long  offset of the fence pointers
+ *  int   block count
+ *  int   block size
+ *  int   record size
+ *  int   key width
+ *  int   magic number
+ * </pre>
+ *
+ * A {@link Reader} memory-maps the blocks and keeps only the fence pointers
+ * on the heap, so a lookup is a binary search over the fences followed by a
+ * binary search inside a single block.
+ *
+ * @author Joseph Cantrell
+ * @version 1.0
+ */
+public final class SortedRunFile {
+
+    /**
+     * The default block size in bytes, one page on most systems.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /**
+     * Identifies a sorted run file.
+     */
+    private static final int MAGIC = 0x53525546;
+
+    /**
+     * The size of the trailer in bytes.
+     */
+    private static final int TRAILER_SIZE = 4 * Long.BYTES + 5 * Integer.BYTES;
+
+    /**
+     * The most bytes mapped by a single buffer.
+     */
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    /**
+     * Do not instantiate.
+     */
+    private SortedRunFile() {
+    }
+
+    /**
+     * Write a sorted array of ints to a sorted run file with 4 byte keys and
+     * no payload.
+     *
+     * @throws IllegalArgumentException if the path or array is null, or the
+     * array is not sorted, in which case no file is left behind
+     * @throws IOException if the file cannot be written
+     * @param path the file to write
+     * @param arr the sorted array to write
+     */
+    public static void write(Path path, int[] arr) throws IOException {
+        if (path == null || arr == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " path or array.");
+        }
+        try (Writer writer = new Writer(path, Integer.BYTES, Integer.BYTES)) {
+            for (int value : arr) {
+                writer.add(value);
+            }
+        }
+    }
+
+    /**
+     * Write a sorted array of longs to a sorted run file with 8 byte keys
+     * and no payload.
+     *
+     * @throws IllegalArgumentException if the path or array is null, or the
+     * array is not sorted, in which case no file is left behind
+     * @throws IOException if the file cannot be written
+     * @param path the file to write
+     * @param arr the sorted array to write
+     */
+    public static void write(Path path, long[] arr) throws IOException {
+        if (path == null || arr == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " path or array.");
+        }
+        try (Writer writer = new Writer(path, Long.BYTES, Long.BYTES)) {
+            for (long value : arr) {
+                writer.add(value);
+            }
+        }
+    }
+
+    /**
+     * Streams records in key order into a sorted run file. The footer is
+     * written when the writer is closed.
+     */
+    public static final class Writer implements Closeable {
+        private final Path path;
+        private final FileChannel channel;
+        private final int keyWidth;
+        private final int recordSize;
+        private final ByteBuffer block;
+        private long[] fences;
+        private int blockCount;
+        private long count;
+        private long min;
+        private long max;
+        private boolean closed;
+        private boolean failed;
+
+        /**
+         * Create a writer with the default block size.
+         *
+         * @throws IllegalArgumentException if the path is null, the key
+         * width is not 4 or 8, or the record size is smaller than the key
+         * width or larger than a block
+         * @throws IOException if the file cannot be created
+         * @param path the file to write, replaced if it exists
+         * @param keyWidth the width of each key in bytes, 4 or 8
+         * @param recordSize the width of each record in bytes, including
+         * the key
+         */
+        public Writer(Path path, int keyWidth, int recordSize)
+            throws IOException {
+            this(path, keyWidth, recordSize, DEFAULT_BLOCK_SIZE);
+        }
+
+        /**
+         * Create a writer.
+         *
+         * @throws IllegalArgumentException if the path is null, the key
+         * width is not 4 or 8, or the record size is smaller than the key
+         * width or larger than a block
+         * @throws IOException if the file cannot be created
+         * @param path the file to write, replaced if it exists
+         * @param keyWidth the width of each key in bytes, 4 or 8
+         * @param recordSize the width of each record in bytes, including
+         * the key
+         * @param blockSize the size of each block in bytes
+         */
+        public Writer(Path path, int keyWidth, int recordSize, int blockSize)
+            throws IOException {
+            if (path == null) {
+                throw new IllegalArgumentException("Cannot pass in a null"
+                        + " path.");
+            }
+            if (keyWidth != Integer.BYTES && keyWidth != Long.BYTES) {
+                throw new IllegalArgumentException("Key width must be 4 or"
+                        + " 8 bytes.");
+            }
+            if (recordSize < keyWidth || recordSize > blockSize) {
+                throw new IllegalArgumentException("Record size must be"
+                        + " between the key width and the block size.");
+            }
+            this.path = path;
+            this.keyWidth = keyWidth;
+            this.recordSize = recordSize;
+            block = ByteBuffer.allocate(blockSize);
+            fences = new long[16];
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Append a record with no payload.
+         *
+         * @throws IllegalArgumentException if the key is smaller than the
+         * previous key, does not fit in the key width, or the record has a
+         * payload
+         * @throws IOException if the record cannot be written
+         * @param key the key of the record
+         */
+        public void add(long key) throws IOException {
+            add(key, new byte[0]);
+        }
+
+        /**
+         * Append a record. If this throws, the writer is marked failed and
+         * closing it deletes the file instead of writing a footer, so a
+         * partial run is never left behind.
+         *
+         * @throws IllegalArgumentException if the payload is null or the
+         * wrong length, or the key is smaller than the previous key or does
+         * not fit in the key width
+         * @throws IllegalStateException if the writer is closed or an
+         * earlier add failed
+         * @throws IOException if the record cannot be written
+         * @param key the key of the record
+         * @param payload the bytes stored after the key
+         */
+        public void add(long key, byte[] payload) throws IOException {
+            if (closed) {
+                throw new IllegalStateException("Writer is closed.");
+            }
+            if (failed) {
+                throw new IllegalStateException("Writer failed on an"
+                        + " earlier record.");
+            }
+            try {
+                append(key, payload);
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Validate a record and copy it into the current block.
+         *
+         * @throws IllegalArgumentException if the record is invalid
+         * @throws IOException if a full block cannot be written
+         * @param key the key of the record
+         * @param payload the bytes stored after the key
+         */
+        private void append(long key, byte[] payload) throws IOException {
+            if (payload == null || payload.length != recordSize - keyWidth) {
+                throw new IllegalArgumentException("Payload must be "
+                        + (recordSize - keyWidth) + " bytes.");
+            }
+            if (keyWidth == Integer.BYTES && key != (int) key) {
+                throw new IllegalArgumentException("Key does not fit in 4"
+                        + " bytes.");
+            }
+            if (count > 0 && key < max) {
+                throw new IllegalArgumentException("Keys must be added in"
+                        + " sorted order.");
+            }
+            if (block.remaining() < recordSize) {
+                flushBlock();
+            }
+            if (block.position() == 0) {
+                if (blockCount == fences.length) {
+                    fences = Arrays.copyOf(fences, fences.length * 2);
+                }
+                fences[blockCount++] = key;
+            }
+            if (keyWidth == Integer.BYTES) {
+                block.putInt((int) key);
+            } else {
+                block.putLong(key);
+            }
+            block.put(payload);
+            if (count == 0) {
+                min = key;
+            }
+            max = key;
+            count++;
+        }
+
+        /**
+         * Pad the current block to its full size and write it out.
+         *
+         * @throws IOException if the block cannot be written
+         */
+        private void flushBlock() throws IOException {
+            while (block.hasRemaining()) {
+                block.put((byte) 0);
+            }
+            block.flip();
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+            block.clear();
+        }
+
+        /**
+         * Write the last block and the footer, then close the file. If an
+         * earlier add failed, the file is deleted instead.
+         *
+         * @throws IOException if the footer cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (failed) {
+                channel.close();
+                Files.deleteIfExists(path);
+                return;
+            }
+            try {
+                if (block.position() > 0) {
+                    flushBlock();
+                }
+                long fenceOffset = (long) blockCount * block.capacity();
+                ByteBuffer footer = ByteBuffer.allocate(
+                        blockCount * Long.BYTES + TRAILER_SIZE);
+                for (int i = 0; i < blockCount; i++) {
+                    footer.putLong(fences[i]);
+                }
+                footer.putLong(count);
+                footer.putLong(min);
+                footer.putLong(max);
+                footer.putLong(fenceOffset);
+                footer.putInt(blockCount);
+                footer.putInt(block.capacity());
+                footer.putInt(recordSize);
+                footer.putInt(keyWidth);
+                footer.putInt(MAGIC);
+                footer.flip();
+                while (footer.hasRemaining()) {
+                    channel.write(footer);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a sorted run file for point lookups and range scans.
+     */
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer[] segments;
+        private final int blocksPerSegment;
+        private final long[] fences;
+        private final long count;
+        private final long min;
+        private final long max;
+        private final int blockSize;
+        private final int recordSize;
+        private final int keyWidth;
+        private final int recordsPerBlock;
+
+        /**
+         * Open a sorted run file.
+         *
+         * @throws IllegalArgumentException if the path is null, the file is
+         * not a sorted run file, or its trailer describes a layout the
+         * file cannot hold
+         * @throws IOException if the file cannot be read
+         * @param path the file to open
+         */
+        public Reader(Path path) throws IOException {
+            if (path == null) {
+                throw new IllegalArgumentException("Cannot pass in a null"
+                        + " path.");
+            }
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < TRAILER_SIZE) {
+                    throw new IllegalArgumentException("Not a sorted run"
+                            + " file.");
+                }
+                ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+                readFully(trailer, size - TRAILER_SIZE);
+                trailer.flip();
+                count = trailer.getLong();
+                min = trailer.getLong();
+                max = trailer.getLong();
+                long fenceOffset = trailer.getLong();
+                int blockCount = trailer.getInt();
+                blockSize = trailer.getInt();
+                recordSize = trailer.getInt();
+                keyWidth = trailer.getInt();
+                if (trailer.getInt() != MAGIC || fenceOffset
+                        + (long) blockCount * Long.BYTES + TRAILER_SIZE
+                        != size) {
+                    throw new IllegalArgumentException("Not a sorted run"
+                            + " file.");
+                }
+                //check the layout before dividing by it or mapping it
+                if (keyWidth != Integer.BYTES && keyWidth != Long.BYTES
+                        || recordSize < keyWidth || recordSize > blockSize
+                        || blockCount < 0
+                        || blockCount > Integer.MAX_VALUE / Long.BYTES
+                        || fenceOffset != (long) blockCount * blockSize) {
+                    throw new IllegalArgumentException("Corrupt sorted run"
+                            + " file trailer.");
+                }
+                recordsPerBlock = blockSize / recordSize;
+                if (count < 0 || count > (long) blockCount * recordsPerBlock
+                        || count <= (long) (blockCount - 1)
+                        * recordsPerBlock) {
+                    throw new IllegalArgumentException("Corrupt sorted run"
+                            + " file trailer.");
+                }
+                ByteBuffer fenceBuffer = ByteBuffer.allocate(
+                        blockCount * Long.BYTES);
+                readFully(fenceBuffer, fenceOffset);
+                fenceBuffer.flip();
+                fences = new long[blockCount];
+                fenceBuffer.asLongBuffer().get(fences);
+                //map the blocks in segments so files over 2GB still work
+                blocksPerSegment = (int) Math.max(1,
+                        MAX_SEGMENT_SIZE / blockSize);
+                segments = new MappedByteBuffer[(blockCount
+                        + blocksPerSegment - 1) / blocksPerSegment];
+                for (int i = 0; i < segments.length; i++) {
+                    long start = (long) i * blocksPerSegment * blockSize;
+                    long length = Math.min((long) blocksPerSegment
+                            * blockSize, fenceOffset - start);
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            start, length);
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Read from the file until the buffer is full.
+         *
+         * @throws IOException if the file ends first
+         * @param buffer the buffer to fill
+         * @param position the file offset to read from
+         */
+        private void readFully(ByteBuffer buffer, long position)
+            throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file.");
+                }
+                position += read;
+            }
+        }
+
+        /**
+         * Get the number of records.
+         *
+         * @return the number of records in the file
+         */
+        public long size() {
+            return count;
+        }
+
+        /**
+         * Get the smallest key. Only meaningful if the file is not empty.
+         *
+         * @return the key of the first record
+         */
+        public long min() {
+            return min;
+        }
+
+        /**
+         * Get the largest key. Only meaningful if the file is not empty.
+         *
+         * @return the key of the last record
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * Get the key of a record.
+         *
+         * @throws IndexOutOfBoundsException if the index is not in the file
+         * @param index the index of the record
+         * @return the key of the record
+         */
+        public long keyAt(long index) {
+            checkIndex(index);
+            return key(index / recordsPerBlock,
+                    (int) (index % recordsPerBlock));
+        }
+
+        /**
+         * Get a read-only view of a record, including its key. The view
+         * shares the mapped file, so nothing is copied.
+         *
+         * @throws IndexOutOfBoundsException if the index is not in the file
+         * @param index the index of the record
+         * @return the bytes of the record
+         */
+        public ByteBuffer record(long index) {
+            checkIndex(index);
+            long block = index / recordsPerBlock;
+            return view(segment(block), offset(block,
+                    (int) (index % recordsPerBlock)));
+        }
+
+        /**
+         * Find the first record whose key is at least the given key.
+         *
+         * @param key the key to search for
+         * @return the index of that record, or size() if there is none
+         */
+        public long lowerBound(long key) {
+            //find the last block whose first key is smaller than key; the
+            //answer is either in that block or at the start of the next one
+            int low = 0;
+            int high = fences.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (fences[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            long block = low - 1;
+            if (block < 0) {
+                return 0;
+            }
+            int first = 0;
+            int last = (int) Math.min(recordsPerBlock,
+                    count - block * recordsPerBlock);
+            while (first < last) {
+                int middle = (first + last) >>> 1;
+                if (key(block, middle) < key) {
+                    first = middle + 1;
+                } else {
+                    last = middle;
+                }
+            }
+            return block * recordsPerBlock + first;
+        }
+
+        /**
+         * Find a record with the given key.
+         *
+         * @param key the key to search for
+         * @return the index of the first record with that key, or -1 if
+         * there is none
+         */
+        public long find(long key) {
+            long index = lowerBound(key);
+            return index < count && keyAt(index) == key ? index : -1;
+        }
+
+        /**
+         * Check whether a key is in the file.
+         *
+         * @param key the key to search for
+         * @return true if some record has that key
+         */
+        public boolean contains(long key) {
+            return find(key) >= 0;
+        }
+
+        /**
+         * Visit every record with a key in [fromKey, toKey) in key order.
+         * Each record is passed as a read-only view of the mapped file.
+         *
+         * @throws IllegalArgumentException if the visitor is null
+         * @param fromKey the smallest key to visit, inclusive
+         * @param toKey the largest key to visit, exclusive
+         * @param visitor the consumer of each record
+         * @return the number of records visited
+         */
+        public long scan(long fromKey, long toKey,
+                         Consumer<ByteBuffer> visitor) {
+            if (visitor == null) {
+                throw new IllegalArgumentException("Cannot pass in a null"
+                        + " visitor.");
+            }
+            long index = lowerBound(fromKey);
+            long visited = 0;
+            while (index < count) {
+                long block = index / recordsPerBlock;
+                ByteBuffer segment = segment(block);
+                int first = (int) (index % recordsPerBlock);
+                int last = (int) Math.min(recordsPerBlock,
+                        count - block * recordsPerBlock);
+                for (int i = first; i < last; i++) {
+                    if (key(block, i) >= toKey) {
+                        return visited;
+                    }
+                    visitor.accept(view(segment, offset(block, i)));
+                    visited++;
+                }
+                index = (block + 1) * recordsPerBlock;
+            }
+            return visited;
+        }
+
+        /**
+         * Read the key of a record within a block.
+         *
+         * @param block the block holding the record
+         * @param record the position of the record in the block
+         * @return the key of the record
+         */
+        private long key(long block, int record) {
+            ByteBuffer segment = segment(block);
+            int offset = offset(block, record);
+            return keyWidth == Integer.BYTES ? segment.getInt(offset)
+                    : segment.getLong(offset);
+        }
+
+        /**
+         * Get a read-only view of one record of a segment without copying.
+         *
+         * @param segment the segment holding the record
+         * @param offset the byte offset of the record in the segment
+         * @return a buffer over exactly that record
+         */
+        private ByteBuffer view(ByteBuffer segment, int offset) {
+            ByteBuffer view = segment.duplicate();
+            //cast to Buffer so this links against Java 8's Buffer methods
+            ((Buffer) view).position(offset);
+            ((Buffer) view).limit(offset + recordSize);
+            return view.slice().asReadOnlyBuffer();
+        }
+
+        /**
+         * Get the mapped segment holding a block.
+         *
+         * @param block the block to look up
+         * @return the segment holding the block
+         */
+        private MappedByteBuffer segment(long block) {
+            return segments[(int) (block / blocksPerSegment)];
+        }
+
+        /**
+         * Get the offset of a record within its segment.
+         *
+         * @param block the block holding the record
+         * @param record the position of the record in the block
+         * @return the byte offset of the record in its segment
+         */
+        private int offset(long block, int record) {
+            return (int) (block % blocksPerSegment) * blockSize
+                    + record * recordSize;
+        }
+
+        /**
+         * Check that a record index is in the file.
+         *
+         * @throws IndexOutOfBoundsException if it is not
+         * @param index the index to check
+         */
+        private void checkIndex(long index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index " + index
+                        + " is not in a file of " + count + " records.");
+            }
+        }
+
+        /**
+         * Close the file. Views returned earlier must not be used after
+         * this.
+         *
+         * @throws IOException if the file cannot be closed
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
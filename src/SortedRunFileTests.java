@@ -0,0 +1,136 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for sorted run files.
+ *
+ * @author Joseph Cantrell
+ * @version 1.0
+ */
+public class SortedRunFileTests {
+    private Path path;
+    private static final int TIMEOUT = 2000;
+
+    @Before
+    public void setUp() throws IOException {
+        path = Files.createTempFile("sorted", ".run");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testIntLookups() throws IOException {
+        int[] sortedArray = new int[5000];
+        for (int i = 0; i < sortedArray.length; i++) {
+            sortedArray[i] = i / 3 * 2;
+        }
+        SortedRunFile.write(path, sortedArray);
+        try (SortedRunFile.Reader reader = new SortedRunFile.Reader(path)) {
+            assertEquals(5000, reader.size());
+            assertEquals(0, reader.min());
+            assertEquals(3332, reader.max());
+            assertEquals(1500, reader.find(1000));
+            assertEquals(-1, reader.find(1001));
+            assertEquals(1503, reader.lowerBound(1001));
+            assertEquals(0, reader.lowerBound(-5));
+            assertEquals(5000, reader.lowerBound(4000));
+            assertTrue(reader.contains(3332));
+            assertFalse(reader.contains(3333));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testRangeScan() throws IOException {
+        long[] sortedArray = new long[] {3, 20, 28, 54, 58, 84, 85, 122};
+        SortedRunFile.write(path, sortedArray);
+        try (SortedRunFile.Reader reader = new SortedRunFile.Reader(path)) {
+            long[] sum = new long[1];
+            long visited = reader.scan(20, 85,
+                record -> sum[0] += record.getLong(0));
+            assertEquals(5, visited);
+            assertEquals(20 + 28 + 54 + 58 + 84, sum[0]);
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testPayloadAcrossBlocks() throws IOException {
+        try (SortedRunFile.Writer writer =
+                new SortedRunFile.Writer(path, Long.BYTES, 12, 64)) {
+            for (int i = 0; i < 100; i++) {
+                writer.add(i * 10, new byte[] {(byte) i, 0, 0, 0});
+            }
+        }
+        try (SortedRunFile.Reader reader = new SortedRunFile.Reader(path)) {
+            ByteBuffer record = reader.record(reader.find(730));
+            assertEquals(730, record.getLong(0));
+            assertEquals(73, record.get(8));
+        }
+    }
+
+    @Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+    public void testUnsortedInput() throws IOException {
+        SortedRunFile.write(path, new int[] {3, 2, 1});
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testCorruptTrailer() throws IOException {
+        int[] sortedArray = new int[5000];
+        for (int i = 0; i < sortedArray.length; i++) {
+            sortedArray[i] = i;
+        }
+        SortedRunFile.write(path, sortedArray);
+        byte[] run = Files.readAllBytes(path);
+        //each case is {field offset from the end, field width, bad value}
+        long[][] corruptions = new long[][] {
+            {12, 4, 0}, //record size of zero
+            {8, 4, 3}, //key width of three
+            {12, 4, 4096 * 2}, //record size larger than a block
+            {20, 4, -1}, //negative block count
+            {52, 8, 5000 + 4096}, //more records than the blocks hold
+            {52, 8, 1}, //too few records to reach the last block
+            {52, 8, -1}, //negative record count
+            {28, 8, 8}, //fences overlapping the blocks
+        };
+        for (long[] corruption : corruptions) {
+            ByteBuffer corrupt = ByteBuffer.wrap(run.clone());
+            int field = run.length - (int) corruption[0];
+            if (corruption[1] == Integer.BYTES) {
+                corrupt.putInt(field, (int) corruption[2]);
+            } else {
+                corrupt.putLong(field, corruption[2]);
+            }
+            Files.write(path, corrupt.array());
+            try (SortedRunFile.Reader reader =
+                    new SortedRunFile.Reader(path)) {
+                fail("Opened a trailer corrupted at " + corruption[0]
+                        + " bytes from the end.");
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testFailedWriteLeavesNoRun() throws IOException {
+        try {
+            SortedRunFile.write(path, new int[] {1, 5, 9, 7, 8});
+            fail("Unsorted input was written.");
+        } catch (IllegalArgumentException e) {
+            assertFalse(Files.exists(path));
+        }
+    }
+}
@@ -1,6 +1,14 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Random;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
 
 /**
  * Your implementation of various sorting algorithms.
@@ -10,6 +18,22 @@ import java.util.LinkedList;
  */
 public class Sorting {
 
+    /**
+     * The size of the blocks insertion sorted before in-place merging.
+     */
+    private static final int MERGE_BLOCK = 16;
+
+    /**
+     * The number of elements compared at once by block partitioning.
+     */
+    private static final int QUICK_SORT_BLOCK = 64;
+
+    /**
+     * Subarrays shorter than this are insertion sorted by the primitive
+     * quick sorts.
+     */
+    private static final int QUICK_SORT_INSERTION = 24;
+
     /**
      * Implement bubble sort.
      *
@@ -225,6 +249,642 @@ public class Sorting {
         return arr;
     }
 
+    /**
+     * Implement quick sort for ints.
+     *
+     * Use the provided random object to select your pivots.
+     *
+     * It should be:
+     *  in-place
+     *
+     * Have a worst case running time of:
+     *  O(n^2)
+     *
+     * And a best case running time of:
+     *  O(n log n)
+     *
+     * Partitioning works on blocks of elements: every element of a block is
+     * compared against the pivot without branching, the offsets of the ones
+     * on the wrong side are recorded, and then the recorded elements are
+     * swapped in pairs. This keeps mispredicted branches out of the inner
+     * loops.
+     *
+     * @throws IllegalArgumentException if the array or rand is null
+     * @param arr the array that must be sorted after the method runs
+     * @param rand the Random object used to select pivots
+     */
+    public static void quickSort(int[] arr, Random rand) {
+        if (arr == null || rand == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " array or Random object.");
+        }
+        quickSortHelper(arr, 0, arr.length - 1, rand,
+                new int[2 * QUICK_SORT_BLOCK]);
+    }
+
+    /**
+     * Sorts the subarray arr[l, r] with block partitioning quick sort.
+     * @param arr The array to sort
+     * @param l The left bound of arr's subarray
+     * @param r The right bound of arr's subarray
+     * @param rand The object used to select pivots
+     * @param offsets Scratch space for two blocks of offsets
+     */
+    private static void quickSortHelper(int[] arr, int l, int r,
+                                        Random rand, int[] offsets) {
+        //recurse into the smaller side and loop on the larger one
+        while (r - l >= QUICK_SORT_INSERTION) {
+            int pivot = blockPartition(arr, l, r,
+                    rand.nextInt(r - l + 1) + l, offsets);
+            if (pivot - l < r - pivot) {
+                quickSortHelper(arr, l, pivot - 1, rand, offsets);
+                l = pivot + 1;
+            } else {
+                quickSortHelper(arr, pivot + 1, r, rand, offsets);
+                r = pivot - 1;
+            }
+        }
+        for (int i = l + 1; i <= r; i++) {
+            int insert = arr[i];
+            int j = i - 1;
+            while (j >= l && arr[j] > insert) {
+                arr[j + 1] = arr[j];
+                j--;
+            }
+            arr[j + 1] = insert;
+        }
+    }
+
+    /**
+     * Partition arr[l, r] around the element at pivotIndex.
+     * @param arr The array to partition
+     * @param l The left bound of arr's subarray
+     * @param r The right bound of arr's subarray
+     * @param pivotIndex The index of the pivot
+     * @param offsets Scratch space for two blocks of offsets
+     * @return The final index of the pivot
+     */
+    private static int blockPartition(int[] arr, int l, int r,
+                                      int pivotIndex, int[] offsets) {
+        int pivot = arr[pivotIndex];
+        arr[pivotIndex] = arr[l];
+        arr[l] = pivot;
+        int left = l + 1;
+        int right = r;
+        int countLeft = 0;
+        int countRight = 0;
+        int startLeft = 0;
+        int startRight = 0;
+        //everything before left is <= pivot, everything after right >= pivot
+        while (right - left + 1 >= 2 * QUICK_SORT_BLOCK) {
+            if (countLeft == 0) {
+                startLeft = 0;
+                for (int i = 0; i < QUICK_SORT_BLOCK; i++) {
+                    offsets[countLeft] = i;
+                    countLeft += arr[left + i] >= pivot ? 1 : 0;
+                }
+            }
+            if (countRight == 0) {
+                startRight = QUICK_SORT_BLOCK;
+                for (int i = 0; i < QUICK_SORT_BLOCK; i++) {
+                    offsets[QUICK_SORT_BLOCK + countRight] = i;
+                    countRight += arr[right - i] <= pivot ? 1 : 0;
+                }
+            }
+            int count = Math.min(countLeft, countRight);
+            for (int i = 0; i < count; i++) {
+                int a = left + offsets[startLeft + i];
+                int b = right - offsets[startRight + i];
+                int temp = arr[a];
+                arr[a] = arr[b];
+                arr[b] = temp;
+            }
+            countLeft -= count;
+            countRight -= count;
+            startLeft += count;
+            startRight += count;
+            if (countLeft == 0) {
+                left += QUICK_SORT_BLOCK;
+            }
+            if (countRight == 0) {
+                right -= QUICK_SORT_BLOCK;
+            }
+        }
+        //finish whatever is left one element at a time
+        while (true) {
+            while (left <= right && arr[left] < pivot) {
+                left++;
+            }
+            while (left <= right && arr[right] > pivot) {
+                right--;
+            }
+            if (left >= right) {
+                break;
+            }
+            int temp = arr[left];
+            arr[left] = arr[right];
+            arr[right] = temp;
+            left++;
+            right--;
+        }
+        arr[l] = arr[right];
+        arr[right] = pivot;
+        return right;
+    }
+
+    /**
+     * Implement quick sort for longs.
+     *
+     * Use the provided random object to select your pivots.
+     *
+     * It should be:
+     *  in-place
+     *
+     * Have a worst case running time of:
+     *  O(n^2)
+     *
+     * And a best case running time of:
+     *  O(n log n)
+     *
+     * Partitioning works on blocks of elements: every element of a block is
+     * compared against the pivot without branching, the offsets of the ones
+     * on the wrong side are recorded, and then the recorded elements are
+     * swapped in pairs. This keeps mispredicted branches out of the inner
+     * loops.
+     *
+     * @throws IllegalArgumentException if the array or rand is null
+     * @param arr the array that must be sorted after the method runs
+     * @param rand the Random object used to select pivots
+     */
+    public static void quickSort(long[] arr, Random rand) {
+        if (arr == null || rand == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " array or Random object.");
+        }
+        quickSortHelper(arr, 0, arr.length - 1, rand,
+                new int[2 * QUICK_SORT_BLOCK]);
+    }
+
+    /**
+     * Sorts the subarray arr[l, r] with block partitioning quick sort.
+     * @param arr The array to sort
+     * @param l The left bound of arr's subarray
+     * @param r The right bound of arr's subarray
+     * @param rand The object used to select pivots
+     * @param offsets Scratch space for two blocks of offsets
+     */
+    private static void quickSortHelper(long[] arr, int l, int r,
+                                        Random rand, int[] offsets) {
+        //recurse into the smaller side and loop on the larger one
+        while (r - l >= QUICK_SORT_INSERTION) {
+            int pivot = blockPartition(arr, l, r,
+                    rand.nextInt(r - l + 1) + l, offsets);
+            if (pivot - l < r - pivot) {
+                quickSortHelper(arr, l, pivot - 1, rand, offsets);
+                l = pivot + 1;
+            } else {
+                quickSortHelper(arr, pivot + 1, r, rand, offsets);
+                r = pivot - 1;
+            }
+        }
+        for (int i = l + 1; i <= r; i++) {
+            long insert = arr[i];
+            int j = i - 1;
+            while (j >= l && arr[j] > insert) {
+                arr[j + 1] = arr[j];
+                j--;
+            }
+            arr[j + 1] = insert;
+        }
+    }
+
+    /**
+     * Partition arr[l, r] around the element at pivotIndex.
+     * @param arr The array to partition
+     * @param l The left bound of arr's subarray
+     * @param r The right bound of arr's subarray
+     * @param pivotIndex The index of the pivot
+     * @param offsets Scratch space for two blocks of offsets
+     * @return The final index of the pivot
+     */
+    private static int blockPartition(long[] arr, int l, int r,
+                                      int pivotIndex, int[] offsets) {
+        long pivot = arr[pivotIndex];
+        arr[pivotIndex] = arr[l];
+        arr[l] = pivot;
+        int left = l + 1;
+        int right = r;
+        int countLeft = 0;
+        int countRight = 0;
+        int startLeft = 0;
+        int startRight = 0;
+        //everything before left is <= pivot, everything after right >= pivot
+        while (right - left + 1 >= 2 * QUICK_SORT_BLOCK) {
+            if (countLeft == 0) {
+                startLeft = 0;
+                for (int i = 0; i < QUICK_SORT_BLOCK; i++) {
+                    offsets[countLeft] = i;
+                    countLeft += arr[left + i] >= pivot ? 1 : 0;
+                }
+            }
+            if (countRight == 0) {
+                startRight = QUICK_SORT_BLOCK;
+                for (int i = 0; i < QUICK_SORT_BLOCK; i++) {
+                    offsets[QUICK_SORT_BLOCK + countRight] = i;
+                    countRight += arr[right - i] <= pivot ? 1 : 0;
+                }
+            }
+            int count = Math.min(countLeft, countRight);
+            for (int i = 0; i < count; i++) {
+                int a = left + offsets[startLeft + i];
+                int b = right - offsets[startRight + i];
+                long temp = arr[a];
+                arr[a] = arr[b];
+                arr[b] = temp;
+            }
+            countLeft -= count;
+            countRight -= count;
+            startLeft += count;
+            startRight += count;
+            if (countLeft == 0) {
+                left += QUICK_SORT_BLOCK;
+            }
+            if (countRight == 0) {
+                right -= QUICK_SORT_BLOCK;
+            }
+        }
+        //finish whatever is left one element at a time
+        while (true) {
+            while (left <= right && arr[left] < pivot) {
+                left++;
+            }
+            while (left <= right && arr[right] > pivot) {
+                right--;
+            }
+            if (left >= right) {
+                break;
+            }
+            long temp = arr[left];
+            arr[left] = arr[right];
+            arr[right] = temp;
+            left++;
+            right--;
+        }
+        arr[l] = arr[right];
+        arr[right] = pivot;
+        return right;
+    }
+
+    /**
+     * Implement quick sort for floats.
+     *
+     * Use the provided random object to select your pivots.
+     *
+     * It should be:
+     *  in-place
+     *
+     * Have a worst case running time of:
+     *  O(n^2)
+     *
+     * And a best case running time of:
+     *  O(n log n)
+     *
+     * Partitioning works on blocks of elements: every element of a block is
+     * compared against the pivot without branching, the offsets of the ones
+     * on the wrong side are recorded, and then the recorded elements are
+     * swapped in pairs. This keeps mispredicted branches out of the inner
+     * loops.
+     *
+     * NaN values are sorted to the end and -0.0 is placed before 0.0, the
+     * same order as {@link Float#compare}.
+     *
+     * @throws IllegalArgumentException if the array or rand is null
+     * @param arr the array that must be sorted after the method runs
+     * @param rand the Random object used to select pivots
+     */
+    public static void quickSort(float[] arr, Random rand) {
+        if (arr == null || rand == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " array or Random object.");
+        }
+        //move NaNs to the end and turn -0.0 into 0.0 so < is a total order
+        int end = arr.length;
+        int negativeZeros = 0;
+        for (int i = end - 1; i >= 0; i--) {
+            float value = arr[i];
+            if (value != value) {
+                end--;
+                arr[i] = arr[end];
+                arr[end] = value;
+            } else if (value == 0.0f
+                    && Float.floatToRawIntBits(value) < 0) {
+                arr[i] = 0.0f;
+                negativeZeros++;
+            }
+        }
+        quickSortHelper(arr, 0, end - 1, rand,
+                new int[2 * QUICK_SORT_BLOCK]);
+        //put the negative zeros back in front of the positive ones
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (arr[middle] < 0.0f) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < low + negativeZeros; i++) {
+            arr[i] = -0.0f;
+        }
+    }
+
+    /**
+     * Sorts the subarray arr[l, r] with block partitioning quick sort.
+     * @param arr The array to sort
+     * @param l The left bound of arr's subarray
+     * @param r The right bound of arr's subarray
+     * @param rand The object used to select pivots
+     * @param offsets Scratch space for two blocks of offsets
+     */
+    private static void quickSortHelper(float[] arr, int l, int r,
+                                        Random rand, int[] offsets) {
+        //recurse into the smaller side and loop on the larger one
+        while (r - l >= QUICK_SORT_INSERTION) {
+            int pivot = blockPartition(arr, l, r,
+                    rand.nextInt(r - l + 1) + l, offsets);
+            if (pivot - l < r - pivot) {
+                quickSortHelper(arr, l, pivot - 1, rand, offsets);
+                l = pivot + 1;
+            } else {
+                quickSortHelper(arr, pivot + 1, r, rand, offsets);
+                r = pivot - 1;
+            }
+        }
+        for (int i = l + 1; i <= r; i++) {
+            float insert = arr[i];
+            int j = i - 1;
+            while (j >= l && arr[j] > insert) {
+                arr[j + 1] = arr[j];
+                j--;
+            }
+            arr[j + 1] = insert;
+        }
+    }
+
+    /**
+     * Partition arr[l, r] around the element at pivotIndex.
+     * @param arr The array to partition
+     * @param l The left bound of arr's subarray
+     * @param r The right bound of arr's subarray
+     * @param pivotIndex The index of the pivot
+     * @param offsets Scratch space for two blocks of offsets
+     * @return The final index of the pivot
+     */
+    private static int blockPartition(float[] arr, int l, int r,
+                                      int pivotIndex, int[] offsets) {
+        float pivot = arr[pivotIndex];
+        arr[pivotIndex] = arr[l];
+        arr[l] = pivot;
+        int left = l + 1;
+        int right = r;
+        int countLeft = 0;
+        int countRight = 0;
+        int startLeft = 0;
+        int startRight = 0;
+        //everything before left is <= pivot, everything after right >= pivot
+        while (right - left + 1 >= 2 * QUICK_SORT_BLOCK) {
+            if (countLeft == 0) {
+                startLeft = 0;
+                for (int i = 0; i < QUICK_SORT_BLOCK; i++) {
+                    offsets[countLeft] = i;
+                    countLeft += arr[left + i] >= pivot ? 1 : 0;
+                }
+            }
+            if (countRight == 0) {
+                startRight = QUICK_SORT_BLOCK;
+                for (int i = 0; i < QUICK_SORT_BLOCK; i++) {
+                    offsets[QUICK_SORT_BLOCK + countRight] = i;
+                    countRight += arr[right - i] <= pivot ? 1 : 0;
+                }
+            }
+            int count = Math.min(countLeft, countRight);
+            for (int i = 0; i < count; i++) {
+                int a = left + offsets[startLeft + i];
+                int b = right - offsets[startRight + i];
+                float temp = arr[a];
+                arr[a] = arr[b];
+                arr[b] = temp;
+            }
+            countLeft -= count;
+            countRight -= count;
+            startLeft += count;
+            startRight += count;
+            if (countLeft == 0) {
+                left += QUICK_SORT_BLOCK;
+            }
+            if (countRight == 0) {
+                right -= QUICK_SORT_BLOCK;
+            }
+        }
+        //finish whatever is left one element at a time
+        while (true) {
+            while (left <= right && arr[left] < pivot) {
+                left++;
+            }
+            while (left <= right && arr[right] > pivot) {
+                right--;
+            }
+            if (left >= right) {
+                break;
+            }
+            float temp = arr[left];
+            arr[left] = arr[right];
+            arr[right] = temp;
+            left++;
+            right--;
+        }
+        arr[l] = arr[right];
+        arr[right] = pivot;
+        return right;
+    }
+
+    /**
+     * Implement quick sort for doubles.
+     *
+     * Use the provided random object to select your pivots.
+     *
+     * It should be:
+     *  in-place
+     *
+     * Have a worst case running time of:
+     *  O(n^2)
+     *
+     * And a best case running time of:
+     *  O(n log n)
+     *
+     * Partitioning works on blocks of elements: every element of a block is
+     * compared against the pivot without branching, the offsets of the ones
+     * on the wrong side are recorded, and then the recorded elements are
+     * swapped in pairs. This keeps mispredicted branches out of the inner
+     * loops.
+     *
+     * NaN values are sorted to the end and -0.0 is placed before 0.0, the
+     * same order as {@link Double#compare}.
+     *
+     * @throws IllegalArgumentException if the array or rand is null
+     * @param arr the array that must be sorted after the method runs
+     * @param rand the Random object used to select pivots
+     */
+    public static void quickSort(double[] arr, Random rand) {
+        if (arr == null || rand == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " array or Random object.");
+        }
+        //move NaNs to the end and turn -0.0 into 0.0 so < is a total order
+        int end = arr.length;
+        int negativeZeros = 0;
+        for (int i = end - 1; i >= 0; i--) {
+            double value = arr[i];
+            if (value != value) {
+                end--;
+                arr[i] = arr[end];
+                arr[end] = value;
+            } else if (value == 0.0d
+                    && Double.doubleToRawLongBits(value) < 0) {
+                arr[i] = 0.0d;
+                negativeZeros++;
+            }
+        }
+        quickSortHelper(arr, 0, end - 1, rand,
+                new int[2 * QUICK_SORT_BLOCK]);
+        //put the negative zeros back in front of the positive ones
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (arr[middle] < 0.0d) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < low + negativeZeros; i++) {
+            arr[i] = -0.0d;
+        }
+    }
+
+    /**
+     * Sorts the subarray arr[l, r] with block partitioning quick sort.
+     * @param arr The array to sort
+     * @param l The left bound of arr's subarray
+     * @param r The right bound of arr's subarray
+     * @param rand The object used to select pivots
+     * @param offsets Scratch space for two blocks of offsets
+     */
+    private static void quickSortHelper(double[] arr, int l, int r,
+                                        Random rand, int[] offsets) {
+        //recurse into the smaller side and loop on the larger one
+        while (r - l >= QUICK_SORT_INSERTION) {
+            int pivot = blockPartition(arr, l, r,
+                    rand.nextInt(r - l + 1) + l, offsets);
+            if (pivot - l < r - pivot) {
+                quickSortHelper(arr, l, pivot - 1, rand, offsets);
+                l = pivot + 1;
+            } else {
+                quickSortHelper(arr, pivot + 1, r, rand, offsets);
+                r = pivot - 1;
+            }
+        }
+        for (int i = l + 1; i <= r; i++) {
+            double insert = arr[i];
+            int j = i - 1;
+            while (j >= l && arr[j] > insert) {
+                arr[j + 1] = arr[j];
+                j--;
+            }
+            arr[j + 1] = insert;
+        }
+    }
+
+    /**
+     * Partition arr[l, r] around the element at pivotIndex.
+     * @param arr The array to partition
+     * @param l The left bound of arr's subarray
+     * @param r The right bound of arr's subarray
+     * @param pivotIndex The index of the pivot
+     * @param offsets Scratch space for two blocks of offsets
+     * @return The final index of the pivot
+     */
+    private static int blockPartition(double[] arr, int l, int r,
+                                      int pivotIndex, int[] offsets) {
+        double pivot = arr[pivotIndex];
+        arr[pivotIndex] = arr[l];
+        arr[l] = pivot;
+        int left = l + 1;
+        int right = r;
+        int countLeft = 0;
+        int countRight = 0;
+        int startLeft = 0;
+        int startRight = 0;
+        //everything before left is <= pivot, everything after right >= pivot
+        while (right - left + 1 >= 2 * QUICK_SORT_BLOCK) {
+            if (countLeft == 0) {
+                startLeft = 0;
+                for (int i = 0; i < QUICK_SORT_BLOCK; i++) {
+                    offsets[countLeft] = i;
+                    countLeft += arr[left + i] >= pivot ? 1 : 0;
+                }
+            }
+            if (countRight == 0) {
+                startRight = QUICK_SORT_BLOCK;
+                for (int i = 0; i < QUICK_SORT_BLOCK; i++) {
+                    offsets[QUICK_SORT_BLOCK + countRight] = i;
+                    countRight += arr[right - i] <= pivot ? 1 : 0;
+                }
+            }
+            int count = Math.min(countLeft, countRight);
+            for (int i = 0; i < count; i++) {
+                int a = left + offsets[startLeft + i];
+                int b = right - offsets[startRight + i];
+                double temp = arr[a];
+                arr[a] = arr[b];
+                arr[b] = temp;
+            }
+            countLeft -= count;
+            countRight -= count;
+            startLeft += count;
+            startRight += count;
+            if (countLeft == 0) {
+                left += QUICK_SORT_BLOCK;
+            }
+            if (countRight == 0) {
+                right -= QUICK_SORT_BLOCK;
+            }
+        }
+        //finish whatever is left one element at a time
+        while (true) {
+            while (left <= right && arr[left] < pivot) {
+                left++;
+            }
+            while (left <= right && arr[right] > pivot) {
+                right--;
+            }
+            if (left >= right) {
+                break;
+            }
+            double temp = arr[left];
+            arr[left] = arr[right];
+            arr[right] = temp;
+            left++;
+            right--;
+        }
+        arr[l] = arr[right];
+        arr[right] = pivot;
+        return right;
+    }
+
     /**
      * Implement merge sort.
      *
@@ -331,6 +991,1069 @@ public class Sorting {
         return result;
     }
 
+    /**
+     * Implement in-place merge sort.
+     *
+     * It should be:
+     *  in-place
+     *  stable
+     *
+     * Have a worst case running time of:
+     *  O(n log^2 n)
+     *
+     * And a best case running time of:
+     *  O(n)
+     *
+     * Unlike mergeSort, this does not allocate full-size auxiliary arrays.
+     * Small blocks are insertion sorted and then merged bottom-up. A merge
+     * goes through an O(sqrt n) buffer when one of its runs fits in it, and
+     * otherwise splits both runs with binary searches and a rotation, so the
+     * extra memory is O(sqrt n) plus an O(log n) recursion stack.
+     *
+     * Any duplicates in the array should be in the same relative position after
+     * sorting as they were before sorting.
+     *
+     * @throws IllegalArgumentException if the array or comparator is null
+     * @param <T> data type to sort
+     * @param arr the array to be sorted
+     * @param comparator the Comparator used to compare the data in arr
+     */
+    public static <T> void inPlaceMergeSort(T[] arr, Comparator<T> comparator) {
+        if (arr == null || comparator == null) {
+            throw new IllegalArgumentException("Cannot pass in a"
+                    + " null array or comparator.");
+        }
+        inPlaceMergeSort(arr, comparator, 0, arr.length);
+    }
+
+    /**
+     * Sorts the subarray arr[lo, hi) with in-place merge sort.
+     * @param arr The array to sort
+     * @param comparator An object for making comparisons
+     * @param lo The first index of the subarray, inclusive
+     * @param hi The last index of the subarray, exclusive
+     * @param <T> The data type to sort
+     */
+    private static <T> void inPlaceMergeSort(T[] arr, Comparator<T> comparator,
+                                             int lo, int hi) {
+        int length = hi - lo;
+        //insertion sort each small block
+        for (int i = lo; i < hi; i += MERGE_BLOCK) {
+            int end = Math.min(i + MERGE_BLOCK, hi);
+            for (int j = i + 1; j < end; j++) {
+                T insert = arr[j];
+                int k = j - 1;
+                while (k >= i && comparator.compare(arr[k], insert) > 0) {
+                    arr[k + 1] = arr[k];
+                    k--;
+                }
+                arr[k + 1] = insert;
+            }
+        }
+        //merge the blocks bottom-up
+        T[] buffer = (T[]) new Object[mergeBufferSize(length)];
+        for (int width = MERGE_BLOCK; width < length; width *= 2) {
+            for (int i = lo; i < hi - width; i += 2 * width) {
+                mergeInPlace(arr, comparator, i, i + width,
+                        Math.min(i + 2 * width, hi), buffer);
+            }
+        }
+    }
+
+    /**
+     * Stably merge the sorted runs arr[lo, mid) and arr[mid, hi).
+     * @param arr The array holding both runs
+     * @param comparator An object for making comparisons
+     * @param lo The first index of the left run
+     * @param mid The first index of the right run
+     * @param hi The index after the right run
+     * @param buffer Scratch space for runs that fit in it
+     * @param <T> The data type to sort
+     */
+    private static <T> void mergeInPlace(T[] arr, Comparator<T> comparator,
+                                         int lo, int mid, int hi,
+                                         T[] buffer) {
+        while (lo < mid && mid < hi
+                && comparator.compare(arr[mid - 1], arr[mid]) > 0) {
+            int leftLength = mid - lo;
+            int rightLength = hi - mid;
+            if (leftLength <= buffer.length) {
+                //merge forwards out of the buffered left run
+                System.arraycopy(arr, lo, buffer, 0, leftLength);
+                int i = 0;
+                int j = mid;
+                int k = lo;
+                while (i < leftLength && j < hi) {
+                    if (comparator.compare(arr[j], buffer[i]) < 0) {
+                        arr[k++] = arr[j++];
+                    } else {
+                        arr[k++] = buffer[i++];
+                    }
+                }
+                System.arraycopy(buffer, i, arr, k, leftLength - i);
+                Arrays.fill(buffer, 0, leftLength, null);
+                return;
+            }
+            if (rightLength <= buffer.length) {
+                //merge backwards out of the buffered right run
+                System.arraycopy(arr, mid, buffer, 0, rightLength);
+                int i = mid - 1;
+                int j = rightLength - 1;
+                int k = hi - 1;
+                while (i >= lo && j >= 0) {
+                    if (comparator.compare(buffer[j], arr[i]) < 0) {
+                        arr[k--] = arr[i--];
+                    } else {
+                        arr[k--] = buffer[j--];
+                    }
+                }
+                System.arraycopy(buffer, 0, arr, lo, j + 1);
+                Arrays.fill(buffer, 0, rightLength, null);
+                return;
+            }
+            //split the longer run in half and find the matching cut in the
+            //other one, then rotate the middle pieces past each other
+            int leftCut;
+            int rightCut;
+            if (leftLength >= rightLength) {
+                leftCut = lo + leftLength / 2;
+                rightCut = mid;
+                int high = hi;
+                while (rightCut < high) {
+                    int m = (rightCut + high) >>> 1;
+                    if (comparator.compare(arr[m], arr[leftCut]) < 0) {
+                        rightCut = m + 1;
+                    } else {
+                        high = m;
+                    }
+                }
+            } else {
+                rightCut = mid + rightLength / 2;
+                leftCut = lo;
+                int high = mid;
+                while (leftCut < high) {
+                    int m = (leftCut + high) >>> 1;
+                    if (comparator.compare(arr[rightCut], arr[m]) < 0) {
+                        high = m;
+                    } else {
+                        leftCut = m + 1;
+                    }
+                }
+            }
+            rotate(arr, leftCut, mid, rightCut);
+            int newMid = leftCut + (rightCut - mid);
+            mergeInPlace(arr, comparator, lo, leftCut, newMid, buffer);
+            lo = newMid;
+            mid = rightCut;
+        }
+    }
+
+    /**
+     * Swap the adjacent ranges arr[lo, mid) and arr[mid, hi) in place.
+     * @param arr The array holding both ranges
+     * @param lo The first index of the left range
+     * @param mid The first index of the right range
+     * @param hi The index after the right range
+     * @param <T> The data type of arr
+     */
+    private static <T> void rotate(T[] arr, int lo, int mid, int hi) {
+        reverse(arr, lo, mid);
+        reverse(arr, mid, hi);
+        reverse(arr, lo, hi);
+    }
+
+    /**
+     * Reverse the range arr[lo, hi) in place.
+     * @param arr The array holding the range
+     * @param lo The first index of the range
+     * @param hi The index after the range
+     * @param <T> The data type of arr
+     */
+    private static <T> void reverse(T[] arr, int lo, int hi) {
+        for (hi--; lo < hi; lo++, hi--) {
+            T temp = arr[lo];
+            arr[lo] = arr[hi];
+            arr[hi] = temp;
+        }
+    }
+
+    /**
+     * Implement in-place merge sort for ints.
+     *
+     * It should be:
+     *  in-place
+     *
+     * Have a worst case running time of:
+     *  O(n log^2 n)
+     *
+     * And a best case running time of:
+     *  O(n)
+     *
+     * Uses the same block merging as the generic version, with an
+     * O(sqrt n) buffer.
+     *
+     * @throws IllegalArgumentException if the array is null
+     * @param arr the array to be sorted
+     */
+    public static void inPlaceMergeSort(int[] arr) {
+        if (arr == null) {
+            throw new IllegalArgumentException("Cannot sort a null array.");
+        }
+        inPlaceMergeSort(arr, 0, arr.length);
+    }
+
+    /**
+     * Sorts the subarray arr[lo, hi) with in-place merge sort.
+     * @param arr The array to sort
+     * @param lo The first index of the subarray, inclusive
+     * @param hi The last index of the subarray, exclusive
+     */
+    private static void inPlaceMergeSort(int[] arr, int lo, int hi) {
+        int length = hi - lo;
+        for (int i = lo; i < hi; i += MERGE_BLOCK) {
+            int end = Math.min(i + MERGE_BLOCK, hi);
+            for (int j = i + 1; j < end; j++) {
+                int insert = arr[j];
+                int k = j - 1;
+                while (k >= i && arr[k] > insert) {
+                    arr[k + 1] = arr[k];
+                    k--;
+                }
+                arr[k + 1] = insert;
+            }
+        }
+        int[] buffer = new int[mergeBufferSize(length)];
+        for (int width = MERGE_BLOCK; width < length; width *= 2) {
+            for (int i = lo; i < hi - width; i += 2 * width) {
+                mergeInPlace(arr, i, i + width,
+                        Math.min(i + 2 * width, hi), buffer);
+            }
+        }
+    }
+
+    /**
+     * Merge the sorted runs arr[lo, mid) and arr[mid, hi).
+     * @param arr The array holding both runs
+     * @param lo The first index of the left run
+     * @param mid The first index of the right run
+     * @param hi The index after the right run
+     * @param buffer Scratch space for runs that fit in it
+     */
+    private static void mergeInPlace(int[] arr, int lo, int mid, int hi,
+                                     int[] buffer) {
+        while (lo < mid && mid < hi && arr[mid - 1] > arr[mid]) {
+            int leftLength = mid - lo;
+            int rightLength = hi - mid;
+            if (leftLength <= buffer.length) {
+                System.arraycopy(arr, lo, buffer, 0, leftLength);
+                int i = 0;
+                int j = mid;
+                int k = lo;
+                while (i < leftLength && j < hi) {
+                    if (arr[j] < buffer[i]) {
+                        arr[k++] = arr[j++];
+                    } else {
+                        arr[k++] = buffer[i++];
+                    }
+                }
+                System.arraycopy(buffer, i, arr, k, leftLength - i);
+                return;
+            }
+            if (rightLength <= buffer.length) {
+                System.arraycopy(arr, mid, buffer, 0, rightLength);
+                int i = mid - 1;
+                int j = rightLength - 1;
+                int k = hi - 1;
+                while (i >= lo && j >= 0) {
+                    if (buffer[j] < arr[i]) {
+                        arr[k--] = arr[i--];
+                    } else {
+                        arr[k--] = buffer[j--];
+                    }
+                }
+                System.arraycopy(buffer, 0, arr, lo, j + 1);
+                return;
+            }
+            int leftCut;
+            int rightCut;
+            if (leftLength >= rightLength) {
+                leftCut = lo + leftLength / 2;
+                rightCut = mid;
+                int high = hi;
+                while (rightCut < high) {
+                    int m = (rightCut + high) >>> 1;
+                    if (arr[m] < arr[leftCut]) {
+                        rightCut = m + 1;
+                    } else {
+                        high = m;
+                    }
+                }
+            } else {
+                rightCut = mid + rightLength / 2;
+                leftCut = lo;
+                int high = mid;
+                while (leftCut < high) {
+                    int m = (leftCut + high) >>> 1;
+                    if (arr[rightCut] < arr[m]) {
+                        high = m;
+                    } else {
+                        leftCut = m + 1;
+                    }
+                }
+            }
+            rotate(arr, leftCut, mid, rightCut);
+            int newMid = leftCut + (rightCut - mid);
+            mergeInPlace(arr, lo, leftCut, newMid, buffer);
+            lo = newMid;
+            mid = rightCut;
+        }
+    }
+
+    /**
+     * Swap the adjacent ranges arr[lo, mid) and arr[mid, hi) in place.
+     * @param arr The array holding both ranges
+     * @param lo The first index of the left range
+     * @param mid The first index of the right range
+     * @param hi The index after the right range
+     */
+    private static void rotate(int[] arr, int lo, int mid, int hi) {
+        reverse(arr, lo, mid);
+        reverse(arr, mid, hi);
+        reverse(arr, lo, hi);
+    }
+
+    /**
+     * Reverse the range arr[lo, hi) in place.
+     * @param arr The array holding the range
+     * @param lo The first index of the range
+     * @param hi The index after the range
+     */
+    private static void reverse(int[] arr, int lo, int hi) {
+        for (hi--; lo < hi; lo++, hi--) {
+            int temp = arr[lo];
+            arr[lo] = arr[hi];
+            arr[hi] = temp;
+        }
+    }
+
+    /**
+     * Implement in-place merge sort for longs.
+     *
+     * It should be:
+     *  in-place
+     *
+     * Have a worst case running time of:
+     *  O(n log^2 n)
+     *
+     * And a best case running time of:
+     *  O(n)
+     *
+     * Uses the same block merging as the generic version, with an
+     * O(sqrt n) buffer.
+     *
+     * @throws IllegalArgumentException if the array is null
+     * @param arr the array to be sorted
+     */
+    public static void inPlaceMergeSort(long[] arr) {
+        if (arr == null) {
+            throw new IllegalArgumentException("Cannot sort a null array.");
+        }
+        inPlaceMergeSort(arr, 0, arr.length);
+    }
+
+    /**
+     * Sorts the subarray arr[lo, hi) with in-place merge sort.
+     * @param arr The array to sort
+     * @param lo The first index of the subarray, inclusive
+     * @param hi The last index of the subarray, exclusive
+     */
+    private static void inPlaceMergeSort(long[] arr, int lo, int hi) {
+        int length = hi - lo;
+        for (int i = lo; i < hi; i += MERGE_BLOCK) {
+            int end = Math.min(i + MERGE_BLOCK, hi);
+            for (int j = i + 1; j < end; j++) {
+                long insert = arr[j];
+                int k = j - 1;
+                while (k >= i && arr[k] > insert) {
+                    arr[k + 1] = arr[k];
+                    k--;
+                }
+                arr[k + 1] = insert;
+            }
+        }
+        long[] buffer = new long[mergeBufferSize(length)];
+        for (int width = MERGE_BLOCK; width < length; width *= 2) {
+            for (int i = lo; i < hi - width; i += 2 * width) {
+                mergeInPlace(arr, i, i + width,
+                        Math.min(i + 2 * width, hi), buffer);
+            }
+        }
+    }
+
+    /**
+     * Merge the sorted runs arr[lo, mid) and arr[mid, hi).
+     * @param arr The array holding both runs
+     * @param lo The first index of the left run
+     * @param mid The first index of the right run
+     * @param hi The index after the right run
+     * @param buffer Scratch space for runs that fit in it
+     */
+    private static void mergeInPlace(long[] arr, int lo, int mid, int hi,
+                                     long[] buffer) {
+        while (lo < mid && mid < hi && arr[mid - 1] > arr[mid]) {
+            int leftLength = mid - lo;
+            int rightLength = hi - mid;
+            if (leftLength <= buffer.length) {
+                System.arraycopy(arr, lo, buffer, 0, leftLength);
+                int i = 0;
+                int j = mid;
+                int k = lo;
+                while (i < leftLength && j < hi) {
+                    if (arr[j] < buffer[i]) {
+                        arr[k++] = arr[j++];
+                    } else {
+                        arr[k++] = buffer[i++];
+                    }
+                }
+                System.arraycopy(buffer, i, arr, k, leftLength - i);
+                return;
+            }
+            if (rightLength <= buffer.length) {
+                System.arraycopy(arr, mid, buffer, 0, rightLength);
+                int i = mid - 1;
+                int j = rightLength - 1;
+                int k = hi - 1;
+                while (i >= lo && j >= 0) {
+                    if (buffer[j] < arr[i]) {
+                        arr[k--] = arr[i--];
+                    } else {
+                        arr[k--] = buffer[j--];
+                    }
+                }
+                System.arraycopy(buffer, 0, arr, lo, j + 1);
+                return;
+            }
+            int leftCut;
+            int rightCut;
+            if (leftLength >= rightLength) {
+                leftCut = lo + leftLength / 2;
+                rightCut = mid;
+                int high = hi;
+                while (rightCut < high) {
+                    int m = (rightCut + high) >>> 1;
+                    if (arr[m] < arr[leftCut]) {
+                        rightCut = m + 1;
+                    } else {
+                        high = m;
+                    }
+                }
+            } else {
+                rightCut = mid + rightLength / 2;
+                leftCut = lo;
+                int high = mid;
+                while (leftCut < high) {
+                    int m = (leftCut + high) >>> 1;
+                    if (arr[rightCut] < arr[m]) {
+                        high = m;
+                    } else {
+                        leftCut = m + 1;
+                    }
+                }
+            }
+            rotate(arr, leftCut, mid, rightCut);
+            int newMid = leftCut + (rightCut - mid);
+            mergeInPlace(arr, lo, leftCut, newMid, buffer);
+            lo = newMid;
+            mid = rightCut;
+        }
+    }
+
+    /**
+     * Swap the adjacent ranges arr[lo, mid) and arr[mid, hi) in place.
+     * @param arr The array holding both ranges
+     * @param lo The first index of the left range
+     * @param mid The first index of the right range
+     * @param hi The index after the right range
+     */
+    private static void rotate(long[] arr, int lo, int mid, int hi) {
+        reverse(arr, lo, mid);
+        reverse(arr, mid, hi);
+        reverse(arr, lo, hi);
+    }
+
+    /**
+     * Reverse the range arr[lo, hi) in place.
+     * @param arr The array holding the range
+     * @param lo The first index of the range
+     * @param hi The index after the range
+     */
+    private static void reverse(long[] arr, int lo, int hi) {
+        for (hi--; lo < hi; lo++, hi--) {
+            long temp = arr[lo];
+            arr[lo] = arr[hi];
+            arr[hi] = temp;
+        }
+    }
+
+    /**
+     * Size the merge buffer for an in-place merge sort of length elements.
+     * @param length The number of elements being sorted
+     * @return The buffer length, about the square root of length
+     */
+    private static int mergeBufferSize(int length) {
+        return (int) Math.sqrt(length);
+    }
+
+    /**
+     * Sort by a key that is computed once per element.
+     *
+     * Each key is extracted exactly once, the keys are sorted together with
+     * the original indices, and the elements are then written back in that
+     * order. Use this instead of a comparator when deriving the compared
+     * value is expensive, since a comparator recomputes it O(n log n) times.
+     *
+     * It should be:
+     *  stable
+     *
+     * Have a worst case running time of:
+     *  O(n log n)
+     *
+     * And a best case running time of:
+     *  O(n log n)
+     *
+     * Any duplicates in the array should be in the same relative position after
+     * sorting as they were before sorting.
+     *
+     * @throws IllegalArgumentException if the array or key function is null
+     * @param <T> data type to sort
+     * @param <K> key type to compare
+     * @param arr the array to be sorted
+     * @param key the function that computes the key of each element
+     */
+    public static <T, K extends Comparable<? super K>> void sortByKey(
+            T[] arr, Function<? super T, ? extends K> key) {
+        if (arr == null || key == null) {
+            throw new IllegalArgumentException("Cannot pass in a"
+                    + " null array or key function.");
+        }
+        List<K> keys = new ArrayList<>(arr.length);
+        int[] index = new int[arr.length];
+        for (int i = 0; i < arr.length; i++) {
+            keys.add(key.apply(arr[i]));
+            index[i] = i;
+        }
+        List<K> keyBuffer = new ArrayList<>(keys);
+        int[] indexBuffer = new int[arr.length];
+        //bottom-up merge sort on the keys, carrying the indices along
+        for (int width = 1; width < arr.length; width *= 2) {
+            for (int lo = 0; lo < arr.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, arr.length);
+                int hi = Math.min(lo + 2 * width, arr.length);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (j >= hi || (i < mid
+                            && keys.get(i).compareTo(keys.get(j)) <= 0)) {
+                        keyBuffer.set(k, keys.get(i));
+                        indexBuffer[k] = index[i++];
+                    } else {
+                        keyBuffer.set(k, keys.get(j));
+                        indexBuffer[k] = index[j++];
+                    }
+                }
+            }
+            List<K> keyTemp = keys;
+            keys = keyBuffer;
+            keyBuffer = keyTemp;
+            int[] indexTemp = index;
+            index = indexBuffer;
+            indexBuffer = indexTemp;
+        }
+        permute(arr, index);
+    }
+
+    /**
+     * Sort by an int key that is computed once per element.
+     *
+     * Each key is packed with its original index into a single long, so the
+     * pairs sort as one flat primitive array and ties keep their order.
+     *
+     * It should be:
+     *  stable
+     *
+     * Have a worst case running time of:
+     *  O(n^2)
+     *
+     * And a best case running time of:
+     *  O(n log n)
+     *
+     * @throws IllegalArgumentException if the array, key function or Random
+     * object is null
+     * @param <T> data type to sort
+     * @param arr the array to be sorted
+     * @param key the function that computes the key of each element
+     * @param rand the Random object used to select pivots
+     */
+    public static <T> void sortByIntKey(T[] arr, ToIntFunction<? super T> key,
+                                        Random rand) {
+        if (arr == null || key == null || rand == null) {
+            throw new IllegalArgumentException("Cannot pass in a"
+                    + " null array or key function or Random object.");
+        }
+        long[] pairs = new long[arr.length];
+        for (int i = 0; i < arr.length; i++) {
+            pairs[i] = ((long) key.applyAsInt(arr[i]) << 32) | i;
+        }
+        quickSort(pairs, rand);
+        int[] index = new int[arr.length];
+        for (int i = 0; i < arr.length; i++) {
+            index[i] = (int) pairs[i];
+        }
+        permute(arr, index);
+    }
+
+    /**
+     * Sort by a long key that is computed once per element.
+     *
+     * It should be:
+     *  stable
+     *
+     * Have a worst case running time of:
+     *  O(n log n)
+     *
+     * And a best case running time of:
+     *  O(n log n)
+     *
+     * @throws IllegalArgumentException if the array or key function is null
+     * @param <T> data type to sort
+     * @param arr the array to be sorted
+     * @param key the function that computes the key of each element
+     */
+    public static <T> void sortByLongKey(T[] arr,
+                                         ToLongFunction<? super T> key) {
+        if (arr == null || key == null) {
+            throw new IllegalArgumentException("Cannot pass in a"
+                    + " null array or key function.");
+        }
+        long[] keys = new long[arr.length];
+        for (int i = 0; i < arr.length; i++) {
+            keys[i] = key.applyAsLong(arr[i]);
+        }
+        permute(arr, sortIndexByKey(keys));
+    }
+
+    /**
+     * Sort by a double key that is computed once per element. Keys are
+     * ordered the same way as {@link Double#compare}.
+     *
+     * It should be:
+     *  stable
+     *
+     * Have a worst case running time of:
+     *  O(n log n)
+     *
+     * And a best case running time of:
+     *  O(n log n)
+     *
+     * @throws IllegalArgumentException if the array or key function is null
+     * @param <T> data type to sort
+     * @param arr the array to be sorted
+     * @param key the function that computes the key of each element
+     */
+    public static <T> void sortByDoubleKey(T[] arr,
+                                           ToDoubleFunction<? super T> key) {
+        if (arr == null || key == null) {
+            throw new IllegalArgumentException("Cannot pass in a"
+                    + " null array or key function.");
+        }
+        long[] keys = new long[arr.length];
+        for (int i = 0; i < arr.length; i++) {
+            //flip the magnitude bits of negatives so longs order like doubles
+            long bits = Double.doubleToLongBits(key.applyAsDouble(arr[i]));
+            keys[i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+        permute(arr, sortIndexByKey(keys));
+    }
+
+    /**
+     * Stably sort the indices of keys by their key.
+     * @param keys The keys to sort, overwritten while sorting
+     * @return The original index of each key, in sorted order
+     */
+    private static int[] sortIndexByKey(long[] keys) {
+        int[] index = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            index[i] = i;
+        }
+        long[] keyBuffer = new long[keys.length];
+        int[] indexBuffer = new int[keys.length];
+        for (int width = 1; width < keys.length; width *= 2) {
+            for (int lo = 0; lo < keys.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, keys.length);
+                int hi = Math.min(lo + 2 * width, keys.length);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (j >= hi || (i < mid && keys[i] <= keys[j])) {
+                        keyBuffer[k] = keys[i];
+                        indexBuffer[k] = index[i++];
+                    } else {
+                        keyBuffer[k] = keys[j];
+                        indexBuffer[k] = index[j++];
+                    }
+                }
+            }
+            long[] keyTemp = keys;
+            keys = keyBuffer;
+            keyBuffer = keyTemp;
+            int[] indexTemp = index;
+            index = indexBuffer;
+            indexBuffer = indexTemp;
+        }
+        return index;
+    }
+
+    /**
+     * Reorder arr so that arr[i] becomes the element that was at index[i].
+     * @param arr The array to reorder
+     * @param index The original index of each element, in the new order
+     * @param <T> The data type of arr
+     */
+    private static <T> void permute(T[] arr, int[] index) {
+        T[] original = arr.clone();
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = original[index[i]];
+        }
+    }
+
+    /**
+     * Re-sort an array that was sorted before a few of its elements changed.
+     *
+     * The changed elements are pulled out while the rest of the array is
+     * shifted right in blocks, then the changed elements are sorted on
+     * their own and merged back in. Each one is placed with a galloping
+     * binary search over the clean elements, and the clean elements in
+     * between are moved as one block.
+     *
+     * Only the changed elements are copied out, so the extra memory is
+     * O(k).
+     *
+     * It should be:
+     *  stable
+     *
+     * Have a worst case running time of:
+     *  O(n + k log k), where k is the number of changed elements
+     *
+     * And a best case running time of:
+     *  O(n)
+     *
+     * Clean elements keep their relative order, as do changed elements. A
+     * changed element is placed after any clean elements equal to it.
+     *
+     * @throws IllegalArgumentException if the array, dirty indices or
+     * comparator is null, or a dirty index is out of bounds
+     * @param <T> data type to sort
+     * @param arr the array that was sorted apart from the dirty indices
+     * @param dirtyIndices the indices that changed, in any order and
+     * possibly repeated
+     * @param comparator the Comparator used to compare the data in arr
+     */
+    public static <T> void resort(T[] arr, int[] dirtyIndices,
+                                  Comparator<T> comparator) {
+        if (arr == null || dirtyIndices == null || comparator == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " array, dirty indices or comparator.");
+        }
+        int[] dirty = dirtyIndices(dirtyIndices, arr.length);
+        T[] buffer = (T[]) new Object[dirty.length];
+        //pull out the dirty elements and shift the clean ones to the end
+        int end = arr.length;
+        int clean = arr.length;
+        for (int d = dirty.length - 1; d >= 0; d--) {
+            buffer[d] = arr[dirty[d]];
+            int start = dirty[d] + 1;
+            clean -= end - start;
+            System.arraycopy(arr, start, arr, clean, end - start);
+            end = dirty[d];
+        }
+        clean -= end;
+        System.arraycopy(arr, 0, arr, clean, end);
+        inPlaceMergeSort(buffer, comparator);
+        int out = 0;
+        for (T insert : buffer) {
+            //gallop forward to find where insert goes among the clean ones
+            int low = clean;
+            int step = 1;
+            while (low + step <= arr.length
+                    && comparator.compare(arr[low + step - 1], insert) <= 0) {
+                low += step;
+                step *= 2;
+            }
+            int high = Math.min(low + step - 1, arr.length);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (comparator.compare(arr[middle], insert) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            System.arraycopy(arr, clean, arr, out, low - clean);
+            out += low - clean;
+            clean = low;
+            arr[out++] = insert;
+        }
+    }
+
+    /**
+     * Re-sort an array of ints that was sorted before a few of its elements
+     * changed.
+     *
+     * Have a worst case running time of:
+     *  O(n + k log k), where k is the number of changed elements
+     *
+     * And a best case running time of:
+     *  O(n)
+     *
+     * @throws IllegalArgumentException if the array or dirty indices are
+     * null, or a dirty index is out of bounds
+     * @param arr the array that was sorted apart from the dirty indices
+     * @param dirtyIndices the indices that changed, in any order and
+     * possibly repeated
+     */
+    public static void resort(int[] arr, int[] dirtyIndices) {
+        if (arr == null || dirtyIndices == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " array or dirty indices.");
+        }
+        int[] dirty = dirtyIndices(dirtyIndices, arr.length);
+        int[] buffer = new int[dirty.length];
+        int end = arr.length;
+        int clean = arr.length;
+        for (int d = dirty.length - 1; d >= 0; d--) {
+            buffer[d] = arr[dirty[d]];
+            int start = dirty[d] + 1;
+            clean -= end - start;
+            System.arraycopy(arr, start, arr, clean, end - start);
+            end = dirty[d];
+        }
+        clean -= end;
+        System.arraycopy(arr, 0, arr, clean, end);
+        inPlaceMergeSort(buffer);
+        int out = 0;
+        for (int insert : buffer) {
+            int low = clean;
+            int step = 1;
+            while (low + step <= arr.length && arr[low + step - 1] <= insert) {
+                low += step;
+                step *= 2;
+            }
+            int high = Math.min(low + step - 1, arr.length);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (arr[middle] <= insert) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            System.arraycopy(arr, clean, arr, out, low - clean);
+            out += low - clean;
+            clean = low;
+            arr[out++] = insert;
+        }
+    }
+
+    /**
+     * Re-sort an array of longs that was sorted before a few of its elements
+     * changed.
+     *
+     * Have a worst case running time of:
+     *  O(n + k log k), where k is the number of changed elements
+     *
+     * And a best case running time of:
+     *  O(n)
+     *
+     * @throws IllegalArgumentException if the array or dirty indices are
+     * null, or a dirty index is out of bounds
+     * @param arr the array that was sorted apart from the dirty indices
+     * @param dirtyIndices the indices that changed, in any order and
+     * possibly repeated
+     */
+    public static void resort(long[] arr, int[] dirtyIndices) {
+        if (arr == null || dirtyIndices == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " array or dirty indices.");
+        }
+        int[] dirty = dirtyIndices(dirtyIndices, arr.length);
+        long[] buffer = new long[dirty.length];
+        int end = arr.length;
+        int clean = arr.length;
+        for (int d = dirty.length - 1; d >= 0; d--) {
+            buffer[d] = arr[dirty[d]];
+            int start = dirty[d] + 1;
+            clean -= end - start;
+            System.arraycopy(arr, start, arr, clean, end - start);
+            end = dirty[d];
+        }
+        clean -= end;
+        System.arraycopy(arr, 0, arr, clean, end);
+        inPlaceMergeSort(buffer);
+        int out = 0;
+        for (long insert : buffer) {
+            int low = clean;
+            int step = 1;
+            while (low + step <= arr.length && arr[low + step - 1] <= insert) {
+                low += step;
+                step *= 2;
+            }
+            int high = Math.min(low + step - 1, arr.length);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (arr[middle] <= insert) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            System.arraycopy(arr, clean, arr, out, low - clean);
+            out += low - clean;
+            clean = low;
+            arr[out++] = insert;
+        }
+    }
+
+    /**
+     * Validate, sort and remove duplicates from a list of dirty indices.
+     * @param dirtyIndices The indices to check, left unchanged
+     * @param length The length of the array the indices refer to
+     * @return The distinct dirty indices in increasing order
+     */
+    private static int[] dirtyIndices(int[] dirtyIndices, int length) {
+        int[] dirty = dirtyIndices.clone();
+        for (int index : dirty) {
+            if (index < 0 || index >= length) {
+                throw new IllegalArgumentException("Dirty index " + index
+                        + " is out of bounds.");
+            }
+        }
+        inPlaceMergeSort(dirty);
+        int distinct = 0;
+        for (int i = 0; i < dirty.length; i++) {
+            if (i == 0 || dirty[i] != dirty[i - 1]) {
+                dirty[distinct++] = dirty[i];
+            }
+        }
+        return Arrays.copyOf(dirty, distinct);
+    }
+
+    /**
+     * Create a Collector that gathers stream elements into a sorted List.
+     *
+     * Each thread of a parallel stream collects into its own buffer. When
+     * two buffers are combined, each is sorted with inPlaceMergeSort if it
+     * is not sorted yet and the two are merged, so the sorting of separate
+     * buffers happens in parallel on the stream's threads.
+     *
+     * It should be:
+     *  stable
+     *
+     * Have a worst case running time of:
+     *  O(n log^2 n)
+     *
+     * And a best case running time of:
+     *  O(n)
+     *
+     * Elements that compare equal stay in encounter order.
+     *
+     * @throws IllegalArgumentException if the comparator is null
+     * @param <T> data type to sort
+     * @param comparator the Comparator used to compare the elements
+     * @return a Collector producing a sorted, modifiable List
+     */
+    public static <T> Collector<T, ?, List<T>> toSortedList(
+            Comparator<T> comparator) {
+        if (comparator == null) {
+            throw new IllegalArgumentException("Cannot pass in a null"
+                    + " comparator.");
+        }
+        return Collector.of(SortedRun<T>::new, SortedRun::add,
+            (left, right) -> left.merge(right, comparator),
+            run -> run.toList(comparator));
+    }
+
+    /**
+     * A growable buffer of stream elements that is sorted lazily.
+     * @param <T> The data type to sort
+     */
+    private static final class SortedRun<T> {
+        private T[] items = (T[]) new Object[16];
+        private int size;
+        private boolean sorted = true;
+
+        /**
+         * Append an element.
+         * @param item The element to append
+         */
+        void add(T item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+            sorted = size == 1;
+        }
+
+        /**
+         * Sort the buffered elements if they are not sorted yet.
+         * @param comparator An object for making comparisons
+         */
+        void sort(Comparator<T> comparator) {
+            if (!sorted) {
+                inPlaceMergeSort(items, comparator, 0, size);
+                sorted = true;
+            }
+        }
+
+        /**
+         * Sort both runs and merge them, this run's elements first on ties.
+         * @param other The run of elements that came later in the stream
+         * @param comparator An object for making comparisons
+         * @return The merged run
+         */
+        SortedRun<T> merge(SortedRun<T> other, Comparator<T> comparator) {
+            sort(comparator);
+            other.sort(comparator);
+            SortedRun<T> merged = new SortedRun<>();
+            merged.items = (T[]) new Object[Math.max(size + other.size, 1)];
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (comparator.compare(other.items[j], items[i]) < 0) {
+                    merged.items[merged.size++] = other.items[j++];
+                } else {
+                    merged.items[merged.size++] = items[i++];
+                }
+            }
+            while (i < size) {
+                merged.items[merged.size++] = items[i++];
+            }
+            while (j < other.size) {
+                merged.items[merged.size++] = other.items[j++];
+            }
+            return merged;
+        }
+
+        /**
+         * Sort the run and copy it into a List.
+         * @param comparator An object for making comparisons
+         * @return The sorted elements
+         */
+        List<T> toList(Comparator<T> comparator) {
+            sort(comparator);
+            return new ArrayList<>(Arrays.asList(items).subList(0, size));
+        }
+    }
+
     /**
      * Implement LSD (least significant digit) radix sort.
      *
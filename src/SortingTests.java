@@ -1,11 +1,13 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Random;
 
 import static com.sun.xml.internal.ws.dump.LoggingDumpTube.Position.Before;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -83,6 +85,69 @@ public class SortingStudentTests {
                 comp.getCount() <= 45);
     }
 
+    @Test(timeout = TIMEOUT)
+    public void testQuickSortInts() {
+        int[] unsortedArray = new int[] {54, 28, 58, 84, 20, 122, 85, 3};
+        int[] sortedArray = new int[] {3, 20, 28, 54, 58, 84, 85, 122};
+        Sorting.quickSort(unsortedArray, new Random(0x600dc0de));
+        assertArrayEquals(sortedArray, unsortedArray);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testQuickSortDoubles() {
+        double[] unsortedArray = new double[] {5.4, Double.NaN, 0.0, -2.8,
+            -0.0, 12.2, 0.3};
+        double[] sortedArray = new double[] {-2.8, -0.0, 0.0, 0.3, 5.4,
+            12.2, Double.NaN};
+        Sorting.quickSort(unsortedArray, new Random(0x600dc0de));
+        //compare bits so -0.0 and 0.0 are told apart
+        long[] sortedBits = new long[sortedArray.length];
+        long[] actualBits = new long[unsortedArray.length];
+        for (int i = 0; i < sortedArray.length; i++) {
+            sortedBits[i] = Double.doubleToLongBits(sortedArray[i]);
+            actualBits[i] = Double.doubleToLongBits(unsortedArray[i]);
+        }
+        assertArrayEquals(sortedBits, actualBits);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testQuickSortIntsLarge() {
+        Random rand = new Random(0x600dc0de);
+        int[] unsortedArray = new int[5000];
+        for (int i = 0; i < unsortedArray.length; i++) {
+            //half the values come from a small range so there are many ties
+            unsortedArray[i] = rand.nextBoolean() ? rand.nextInt(16)
+                : rand.nextInt();
+        }
+        int[] sortedArray = unsortedArray.clone();
+        Arrays.sort(sortedArray);
+        Sorting.quickSort(unsortedArray, rand);
+        assertArrayEquals(sortedArray, unsortedArray);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testQuickSortDoublesLarge() {
+        Random rand = new Random(0x600dc0de);
+        double[] specials = new double[] {Double.NaN, 0.0, -0.0, 1.5, -1.5,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        double[] unsortedArray = new double[5000];
+        for (int i = 0; i < unsortedArray.length; i++) {
+            unsortedArray[i] = rand.nextBoolean()
+                ? specials[rand.nextInt(specials.length)]
+                : rand.nextGaussian();
+        }
+        double[] sortedArray = unsortedArray.clone();
+        Arrays.sort(sortedArray);
+        Sorting.quickSort(unsortedArray, rand);
+        long[] sortedBits = new long[sortedArray.length];
+        long[] actualBits = new long[unsortedArray.length];
+        for (int i = 0; i < sortedArray.length; i++) {
+            sortedBits[i] = Double.doubleToLongBits(sortedArray[i]);
+            actualBits[i] = Double.doubleToLongBits(unsortedArray[i]);
+        }
+        assertArrayEquals(sortedBits, actualBits);
+    }
+
     @Test(timeout = TIMEOUT)
     public void testMergeSort() {
         Sorting.mergeSort(tas, comp);
@@ -91,6 +156,149 @@ public class SortingStudentTests {
                 comp.getCount() <= 48);
     }
 
+    @Test(timeout = TIMEOUT)
+    public void testInPlaceMergeSort() {
+        Sorting.inPlaceMergeSort(tas, comp);
+        assertArrayEquals(tasByName, tas);
+        assertTrue("Number of comparisons: " + comp.getCount(),
+                comp.getCount() <= 24);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testInPlaceMergeSortStable() {
+        TeachingAssistant[] tasByAge = new TeachingAssistant[] {tas[8],
+            tas[1], tas[3], tas[5], tas[6], tas[7], tas[4], tas[9], tas[0],
+            tas[2]};
+        Sorting.inPlaceMergeSort(tas, TeachingAssistant.getAgeComparator());
+        assertArrayEquals(tasByAge, tas);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testInPlaceMergeSortInts() {
+        int[] unsortedArray = new int[] {54, 28, 58, 84, 20, 122, 85, 3};
+        int[] sortedArray = new int[] {3, 20, 28, 54, 58, 84, 85, 122};
+        Sorting.inPlaceMergeSort(unsortedArray);
+        assertArrayEquals(sortedArray, unsortedArray);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testInPlaceMergeSortStableLarge() {
+        //few distinct ages, so equal runs outgrow the merge buffer and the
+        //rotation path has to keep them in order
+        Random rand = new Random(0x600dc0de);
+        TeachingAssistant[] unsorted = new TeachingAssistant[5000];
+        for (int i = 0; i < unsorted.length; i++) {
+            unsorted[i] = new TeachingAssistant("TA" + i, rand.nextInt(4), i);
+        }
+        Sorting.inPlaceMergeSort(unsorted,
+                TeachingAssistant.getAgeComparator());
+        for (int i = 1; i < unsorted.length; i++) {
+            TeachingAssistant prev = unsorted[i - 1];
+            TeachingAssistant curr = unsorted[i];
+            assertTrue("Out of order at " + i, prev.getAge() < curr.getAge()
+                    || prev.getAge() == curr.getAge()
+                    && prev.getYear() < curr.getYear());
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testInPlaceMergeSortLongs() {
+        Random rand = new Random(0x600dc0de);
+        long[] unsortedArray = new long[5000];
+        for (int i = 0; i < unsortedArray.length; i++) {
+            unsortedArray[i] = rand.nextBoolean() ? rand.nextInt(8)
+                : rand.nextLong();
+        }
+        long[] sortedArray = unsortedArray.clone();
+        Arrays.sort(sortedArray);
+        Sorting.inPlaceMergeSort(unsortedArray);
+        assertArrayEquals(sortedArray, unsortedArray);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testSortByKey() {
+        int[] calls = new int[1];
+        Sorting.sortByKey(tas, ta -> {
+            calls[0]++;
+            return ta.getName();
+        });
+        assertArrayEquals(tasByName, tas);
+        assertEquals(10, calls[0]);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testSortByIntKey() {
+        TeachingAssistant[] tasByAge = new TeachingAssistant[] {tas[8],
+            tas[1], tas[3], tas[5], tas[6], tas[7], tas[4], tas[9], tas[0],
+            tas[2]};
+        Sorting.sortByIntKey(tas, TeachingAssistant::getAge,
+                new Random(0x600dc0de));
+        assertArrayEquals(tasByAge, tas);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testSortByLongKey() {
+        TeachingAssistant[] tasByYear = new TeachingAssistant[] {tas[1],
+            tas[2], tas[5], tas[8], tas[3], tas[4], tas[6], tas[7], tas[9],
+            tas[0]};
+        //keys of both signs and outside the int range
+        Sorting.sortByLongKey(tas, ta -> (ta.getYear() - 3) * (1L << 40));
+        assertArrayEquals(tasByYear, tas);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testSortByDoubleKey() {
+        Random rand = new Random(0x600dc0de);
+        double[] specials = new double[] {Double.NaN, 0.0, -0.0, 1.5, -1.5,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY};
+        double[] keys = new double[2000];
+        TeachingAssistant[] unsorted = new TeachingAssistant[keys.length];
+        Integer[] expected = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rand.nextBoolean()
+                ? specials[rand.nextInt(specials.length)]
+                : rand.nextGaussian();
+            unsorted[i] = new TeachingAssistant("TA" + i, 20, i);
+            expected[i] = i;
+        }
+        //Arrays.sort on objects is stable, so it gives the expected order
+        Arrays.sort(expected, (i, j) -> Double.compare(keys[i], keys[j]));
+        Sorting.sortByDoubleKey(unsorted, ta -> keys[ta.getYear()]);
+        for (int i = 0; i < unsorted.length; i++) {
+            assertEquals((int) expected[i], unsorted[i].getYear());
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testResort() {
+        TeachingAssistant[] resorted = tasByName.clone();
+        tasByName[0].setName("Zach");
+        tasByName[5].setName("Bob");
+        TeachingAssistant[] expected = new TeachingAssistant[] {
+            resorted[5], resorted[1], resorted[2], resorted[3], resorted[4],
+            resorted[6], resorted[7], resorted[8], resorted[9], resorted[0]};
+        Sorting.resort(resorted, new int[] {5, 0, 5}, comp);
+        assertArrayEquals(expected, resorted);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testResortInts() {
+        int[] unsortedArray = new int[] {3, 20, 28, 54, 58, 84, 85, 122};
+        unsortedArray[2] = 100;
+        unsortedArray[6] = 1;
+        int[] sortedArray = new int[] {1, 3, 20, 54, 58, 84, 100, 122};
+        Sorting.resort(unsortedArray, new int[] {6, 2});
+        assertArrayEquals(sortedArray, unsortedArray);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testToSortedList() {
+        Object[] sorted = Arrays.stream(tas).parallel()
+                .collect(Sorting.toSortedList(comp)).toArray();
+        assertArrayEquals(tasByName, sorted);
+    }
+
     @Test(timeout = TIMEOUT)
     public void testLsdRadixSort() {
         int[] unsortedArray = new int[] {54, 28, 58, 84, 20, 122, 85, 3};